@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.Playfield;
+import com.ray3k.fallingblockshapes.ShapePack;
+
+/**
+ * Fixtures shared by the benchmarks. Assets are read relative to the working
+ * directory, which the jmh task sets to core/assets.
+ */
+final class BenchmarkSupport {
+    static final long SEED = 0x5eedL;
+
+    private BenchmarkSupport() {
+    }
+    
+    static Array<FileHandle> listShapeFiles() {
+        FileHandle parent = new FileHandle(Core.SHAPES_PATH);
+        //same order as the shape catalog so recorded replays play back correctly
+        Array<FileHandle> files = new Array<FileHandle>(ShapePack.listShapeFiles(parent));
+        if (files.size == 0) {
+            throw new IllegalStateException("No shapes found in " + parent.file().getAbsolutePath());
+        }
+        return files;
+    }
+    
+    static Array<CompiledShape> loadShapes() {
+        FileHandle parent = new FileHandle(Core.SHAPES_PATH);
+        ShapePack pack = ShapePack.build(parent);
+        if (pack.size() == 0) {
+            throw new IllegalStateException("No shapes found in " + parent.file().getAbsolutePath());
+        }
+        return pack.getShapes();
+    }
+    
+    /**
+     * Fills the bottom {@code fill} fraction of the playfield with rows that
+     * each have exactly one hole, so no row is ever cleared by the filling.
+     */
+    static void fill(Playfield playfield, float fill, long seed) {
+        playfield.clear();
+        fillRows(playfield, 0, (int) (playfield.getHeight() * fill), seed);
+    }
+    
+    static void fillRows(Playfield playfield, int bottom, int count, long seed) {
+        RandomXS128 random = new RandomXS128(seed);
+        int fullRow = (1 << playfield.getWidth()) - 1;
+        int[] row = new int[1];
+        for (int y = bottom; y < bottom + count && y < playfield.getHeight(); y++) {
+            row[0] = fullRow & ~(1 << random.nextInt(playfield.getWidth()));
+            playfield.lock(row, 0, y);
+        }
+    }
+}
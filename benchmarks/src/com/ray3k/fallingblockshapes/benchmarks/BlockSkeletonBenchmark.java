@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.esotericsoftware.spine.AnimationState;
+import com.esotericsoftware.spine.AnimationStateData;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonBounds;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.HeadlessAttachmentLoader;
+import com.ray3k.fallingblockshapes.entities.BlockSkeletonCache;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Per-tick skeleton work for a board of blocks. {@link #perBlock()} is the
+ * cost of every block animating, posing and bounding its own skeleton;
+ * {@link #instanced()} is the cost with one shared skeleton per colour as
+ * done by {@link BlockSkeletonCache}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockSkeletonBenchmark {
+    private static final float DELTA = .01f;
+    private static final Color[] COLORS = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN, Color.BLUE, Color.PURPLE};
+    
+    @Param({"40", "120", "240"})
+    public int blockCount;
+    
+    private Array<Skeleton> skeletons;
+    private Array<AnimationState> animationStates;
+    private SkeletonBounds skeletonBounds;
+    private BlockSkeletonCache cache;
+    private Array<Skeleton> sharedSkeletons;
+    
+    @Setup
+    public void setup() {
+        SkeletonJson skeletonJson = new SkeletonJson(new HeadlessAttachmentLoader());
+        SkeletonData skeletonData = skeletonJson.readSkeletonData(new FileHandle(Core.DATA_PATH + "/spine/tetromino.json"));
+        
+        skeletons = new Array<Skeleton>();
+        animationStates = new Array<AnimationState>();
+        skeletonBounds = new SkeletonBounds();
+        cache = new BlockSkeletonCache(skeletonData);
+        sharedSkeletons = new Array<Skeleton>();
+        
+        for (int i = 0; i < blockCount; i++) {
+            Color color = COLORS[i % COLORS.length];
+            
+            Skeleton skeleton = new Skeleton(skeletonData);
+            skeleton.getSlots().get(cache.getSlotIndex()).getColor().set(color);
+            AnimationStateData animationStateData = new AnimationStateData(skeletonData);
+            animationStateData.setDefaultMix(.25f);
+            AnimationState animationState = new AnimationState(animationStateData);
+            animationState.setAnimation(0, "animation", true);
+            skeletons.add(skeleton);
+            animationStates.add(animationState);
+            
+            sharedSkeletons.add(cache.obtain(color));
+        }
+    }
+    
+    @Benchmark
+    public SkeletonBounds perBlock() {
+        for (int i = 0; i < skeletons.size; i++) {
+            Skeleton skeleton = skeletons.get(i);
+            AnimationState animationState = animationStates.get(i);
+            animationState.update(DELTA);
+            animationState.apply(skeleton);
+            skeleton.setPosition(i, i);
+            skeleton.updateWorldTransform();
+            skeletonBounds.update(skeleton, true);
+        }
+        return skeletonBounds;
+    }
+    
+    @Benchmark
+    public BlockSkeletonCache instanced() {
+        cache.update(DELTA);
+        for (int i = 0; i < sharedSkeletons.size; i++) {
+            cache.setPosition(sharedSkeletons.get(i), i, i);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.RandomXS128;
+import com.ray3k.fallingblockshapes.Entity;
+import com.ray3k.fallingblockshapes.EntityManager;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One simulation tick and one draw pass of the entity manager. Entities move
+ * every tick and check collisions, so {@code act} includes the collision
+ * phase with or without the broad-phase. The draw pass runs without a
+ * SpriteBatch because the entities have no texture region; it measures the
+ * render queue and the per-entity dispatch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityManagerBenchmark {
+    private static final float DELTA = .01f;
+    private static final float AREA = 1000.0f;
+    
+    @Param({"100", "1000", "5000"})
+    public int entityCount;
+    
+    @Param({"false", "true"})
+    public boolean broadPhase;
+    
+    private EntityManager entityManager;
+    
+    @Setup
+    public void setup() {
+        entityManager = new EntityManager();
+        if (broadPhase) {
+            entityManager.enableBroadPhase(32.0f);
+        }
+        
+        RandomXS128 random = new RandomXS128(BenchmarkSupport.SEED);
+        for (int i = 0; i < entityCount; i++) {
+            MovingEntity entity = new MovingEntity(entityManager);
+            entity.setPosition(random.nextFloat() * AREA, random.nextFloat() * AREA);
+            entity.setMotion(20.0f, random.nextFloat() * 360.0f);
+            entity.setDepth(random.nextInt(4));
+        }
+    }
+    
+    @Benchmark
+    public EntityManager act() {
+        entityManager.beginStep();
+        entityManager.act(DELTA);
+        return entityManager;
+    }
+    
+    @Benchmark
+    public EntityManager draw() {
+        entityManager.draw(null, 0.0f);
+        return entityManager;
+    }
+    
+    /**
+     * Bounces inside the benchmark area and counts its collisions.
+     */
+    private static class MovingEntity extends Entity {
+        private int collisions;
+
+        public MovingEntity(EntityManager manager) {
+            super(manager, null);
+        }
+
+        @Override
+        public void create() {
+            getCollisionBox().setSize(8.0f, 8.0f);
+            setCheckingCollisions(true);
+        }
+
+        @Override
+        public void act(float delta) {
+            if (getX() < 0.0f || getX() > AREA) {
+                setXspeed(-getXspeed());
+            }
+            if (getY() < 0.0f || getY() > AREA) {
+                setYspeed(-getYspeed());
+            }
+        }
+
+        @Override
+        public void act_end(float delta) {
+        }
+
+        @Override
+        public void draw(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+            collisions++;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.ray3k.fallingblockshapes.Playfield;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Locking a vertical bar into a well and clearing the completed rows. The
+ * board is restored from a template before every lock, so the cost of the
+ * copy is included and measured separately by {@link #restore()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineClearBenchmark {
+    private static final int[] BAR = {1, 1, 1, 1};
+    
+    @Param({"0", "0.25", "0.5", "0.75"})
+    public float fill;
+    
+    private Playfield template;
+    private Playfield playfield;
+    
+    @Setup
+    public void setup() {
+        template = new Playfield(Playfield.DEFAULT_WIDTH, Playfield.DEFAULT_HEIGHT);
+        
+        //a well in column 0 that the bar completes, with random rows on top
+        int[] well = {(1 << template.getWidth()) - 2};
+        for (int y = 0; y < BAR.length; y++) {
+            template.lock(well, 0, y);
+        }
+        BenchmarkSupport.fillRows(template, BAR.length, (int) (template.getHeight() * fill), BenchmarkSupport.SEED);
+        
+        playfield = new Playfield(template.getWidth(), template.getHeight());
+    }
+    
+    @Benchmark
+    public Playfield restore() {
+        playfield.set(template);
+        return playfield;
+    }
+    
+    @Benchmark
+    public int lockAndClear() {
+        playfield.set(template);
+        playfield.lock(BAR, 0, 0);
+        return playfield.clearLines(0, BAR.length);
+    }
+}
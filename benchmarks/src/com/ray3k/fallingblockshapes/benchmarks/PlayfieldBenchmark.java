@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collision queries against boards of increasing fill. Each invocation tests
+ * every shape in every rotation at every column, which is the work a piece
+ * placement search does per board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayfieldBenchmark {
+    @Param({"0", "0.25", "0.5", "0.75"})
+    public float fill;
+    
+    private Playfield playfield;
+    private Array<CompiledShape> shapes;
+    
+    @Setup
+    public void setup() {
+        shapes = BenchmarkSupport.loadShapes();
+        playfield = new Playfield(Playfield.DEFAULT_WIDTH, Playfield.DEFAULT_HEIGHT);
+        BenchmarkSupport.fill(playfield, fill, BenchmarkSupport.SEED);
+    }
+    
+    @Benchmark
+    public int fits() {
+        int count = 0;
+        int y = playfield.getStackHeight();
+        for (int i = 0; i < shapes.size; i++) {
+            CompiledShape shape = shapes.get(i);
+            for (int rotation = 0; rotation < CompiledShape.ROTATIONS; rotation++) {
+                for (int x = -CompiledShape.SIZE; x < playfield.getWidth(); x++) {
+                    for (int row = y; row >= y - CompiledShape.SIZE; row--) {
+                        if (playfield.fits(shape, rotation, x, row)) {
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+    
+    @Benchmark
+    public int dropDistance() {
+        int total = 0;
+        for (int i = 0; i < shapes.size; i++) {
+            CompiledShape shape = shapes.get(i);
+            int y = shape.getSpawnY(playfield.getHeight());
+            for (int rotation = 0; rotation < CompiledShape.ROTATIONS; rotation++) {
+                for (int x = -CompiledShape.SIZE; x < playfield.getWidth(); x++) {
+                    total += playfield.dropDistance(shape, rotation, x, y);
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.simulation.HeuristicPolicy;
+import com.ray3k.fallingblockshapes.simulation.PolicyController;
+import com.ray3k.fallingblockshapes.simulation.Replay;
+import com.ray3k.fallingblockshapes.simulation.ReplayPlayer;
+import com.ray3k.fallingblockshapes.simulation.Simulation;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plays a recorded game from start to finish as fast as possible. Pass a
+ * real session with {@code -p replay=replays/last.replay}; without one a game
+ * is recorded from the heuristic policy during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+    private static final int RECORDED_PIECES = 500;
+    
+    @Param({""})
+    public String replay;
+    
+    private Array<CompiledShape> shapes;
+    private Replay session;
+    
+    @Setup
+    public void setup() {
+        shapes = BenchmarkSupport.loadShapes();
+        
+        if (replay.length() > 0) {
+            session = Replay.read(new FileHandle(replay));
+            if (!session.matches(shapes)) {
+                throw new IllegalStateException("Replay was recorded with a different shape set: " + replay);
+            }
+        } else {
+            session = new Replay(BenchmarkSupport.SEED, shapes);
+            Simulation simulation = new Simulation(shapes, BenchmarkSupport.SEED);
+            PolicyController controller = new PolicyController(HeuristicPolicy.FACTORY.newPolicy(BenchmarkSupport.SEED));
+            simulation.start();
+            while (!simulation.isGameOver() && simulation.getPieceCount() <= RECORDED_PIECES) {
+                int input = controller.poll(simulation);
+                session.record(input);
+                simulation.step(Core.STEP, input);
+            }
+        }
+    }
+    
+    @Benchmark
+    public Simulation play() {
+        return ReplayPlayer.simulate(session, shapes, Core.STEP);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.benchmarks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.SaveShape;
+import com.ray3k.fallingblockshapes.ShapePack;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing the shape library the way GameState does on start. The files are
+ * read into memory during setup so only the JSON parsing and the compilation
+ * of the shapes are measured, not the disk. {@link #readPack()} loads the
+ * same shapes from a {@link ShapePack} file instead, including the read from
+ * disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeParsingBenchmark {
+    private Array<String> sources;
+    private Json json;
+    private FileHandle packFile;
+    
+    @Setup
+    public void setup() {
+        sources = new Array<String>();
+        for (FileHandle file : BenchmarkSupport.listShapeFiles()) {
+            sources.add(file.readString());
+        }
+        json = new Json();
+        
+        packFile = FileHandle.tempFile("shapes");
+        packFile.file().deleteOnExit();
+        ShapePack.build(new FileHandle(Core.SHAPES_PATH)).write(packFile);
+    }
+    
+    @Benchmark
+    public Array<SaveShape> parse() {
+        Array<SaveShape> shapes = new Array<SaveShape>(sources.size);
+        for (int i = 0; i < sources.size; i++) {
+            shapes.add(json.fromJson(SaveShape.class, sources.get(i)));
+        }
+        return shapes;
+    }
+    
+    @Benchmark
+    public Array<CompiledShape> parseAndCompile() {
+        Array<CompiledShape> shapes = new Array<CompiledShape>(sources.size);
+        for (int i = 0; i < sources.size; i++) {
+            shapes.add(new CompiledShape(json.fromJson(SaveShape.class, sources.get(i))));
+        }
+        return shapes;
+    }
+    
+    @Benchmark
+    public ShapePack readPack() {
+        return ShapePack.read(packFile);
+    }
+}
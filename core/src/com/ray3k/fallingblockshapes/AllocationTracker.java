@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the current thread between
+ * {@link #begin()} and {@link #end()}. Relies on the HotSpot extension of
+ * {@link ThreadMXBean}; on other VMs {@link #isSupported()} is false and
+ * every measurement is zero. The cost of sampling itself is measured once
+ * and subtracted, so a block that allocates nothing reports zero.
+ */
+public class AllocationTracker {
+    private final com.sun.management.ThreadMXBean bean;
+    private final long overhead;
+    private long start;
+    private long total;
+    private long samples;
+
+    public AllocationTracker() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            bean = (com.sun.management.ThreadMXBean) threadBean;
+            bean.setThreadAllocatedMemoryEnabled(true);
+            
+            //sampling may box the thread id into an array on some VMs, take the smallest of a few tries
+            long smallest = Long.MAX_VALUE;
+            for (int i = 0; i < 16; i++) {
+                long before = sample();
+                smallest = Math.min(smallest, sample() - before);
+            }
+            overhead = smallest;
+        } else {
+            bean = null;
+            overhead = 0;
+        }
+    }
+    
+    public boolean isSupported() {
+        return bean != null;
+    }
+    
+    public void begin() {
+        start = sample();
+    }
+    
+    /**
+     * @return the bytes allocated since {@link #begin()}. The value is also
+     * added to the running total.
+     */
+    public long end() {
+        long allocated = Math.max(0, sample() - start - overhead);
+        total += allocated;
+        samples++;
+        return allocated;
+    }
+    
+    private long sample() {
+        return bean == null ? 0 : bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    
+    public void reset() {
+        total = 0;
+        samples = 0;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+    
+    public double getAverage() {
+        return samples == 0 ? 0 : total / (double) samples;
+    }
+}
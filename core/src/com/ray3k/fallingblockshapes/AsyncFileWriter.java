@@ -0,0 +1,221 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.StreamUtils;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes files on a background thread so the render thread never waits on
+ * the disk. Every file is written to a temporary sibling and renamed over
+ * the target, so a crash mid-write leaves either the old or the new file,
+ * never a truncated one.
+ * <p>
+ * Writes queued while the writer is busy are written together in the next
+ * batch, and only the last contents queued for a file are written. Listeners
+ * are notified on the render thread through
+ * {@link com.badlogic.gdx.Application#postRunnable(Runnable)}.
+ */
+public class AsyncFileWriter implements Disposable {
+    public final static String TEMP_SUFFIX = ".tmp";
+    private final static long SHUTDOWN_TIMEOUT = 5;
+    private final ExecutorService executor;
+    private final LinkedHashMap<String, Request> pending;
+    private final Runnable flush;
+    private boolean scheduled;
+
+    public AsyncFileWriter() {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "file-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pending = new LinkedHashMap<String, Request>();
+        flush = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+    
+    /**
+     * Queues the contents to be written to the file, replacing contents
+     * queued earlier for the same file that were not written yet.
+     * @param listener notified once the file is written or has failed, may be
+     * null.
+     */
+    public void write(FileHandle file, byte[] contents, Listener listener) {
+        synchronized (pending) {
+            String key = file.file().getAbsolutePath();
+            Request request = pending.get(key);
+            if (request == null) {
+                request = new Request(file);
+                pending.put(key, request);
+            }
+            request.contents = contents;
+            if (listener != null) {
+                request.listeners.add(listener);
+            }
+            
+            if (!scheduled) {
+                scheduled = true;
+                executor.execute(flush);
+            }
+        }
+    }
+    
+    private void flush() {
+        Array<Request> batch = new Array<Request>();
+        while (true) {
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+                for (Iterator<Request> iterator = pending.values().iterator(); iterator.hasNext();) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+            
+            for (Request request : batch) {
+                Exception exception = null;
+                try {
+                    writeAtomically(request.file.file(), request.contents);
+                } catch (IOException e) {
+                    exception = e;
+                }
+                notify(request, exception);
+            }
+            batch.clear();
+        }
+    }
+    
+    private static void writeAtomically(File target, byte[] contents) throws IOException {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory: " + parent);
+        }
+        
+        File temp = new File(parent, target.getName() + TEMP_SUFFIX);
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            output.write(contents);
+            output.getFD().sync();
+            output.close();
+            output = null;
+            
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            StreamUtils.closeQuietly(output);
+            temp.delete();
+        }
+    }
+    
+    private void notify(final Request request, final Exception exception) {
+        if (request.listeners.size == 0 && exception == null) {
+            return;
+        }
+        
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                if (exception != null && request.listeners.size == 0) {
+                    if (Gdx.app != null) {
+                        Gdx.app.error(AsyncFileWriter.class.getName(), "Error writing file: " + request.file.path(), exception);
+                    } else {
+                        exception.printStackTrace();
+                    }
+                }
+                for (Listener listener : request.listeners) {
+                    if (exception == null) {
+                        listener.written(request.file);
+                    } else {
+                        listener.failed(request.file, exception);
+                    }
+                }
+            }
+        };
+        
+        if (Gdx.app != null) {
+            Gdx.app.postRunnable(runnable);
+        } else {
+            runnable.run();
+        }
+    }
+    
+    /**
+     * Stops accepting writes and waits for the queued ones to finish.
+     */
+    @Override
+    public void dispose() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public interface Listener {
+        public void written(FileHandle file);
+        
+        public void failed(FileHandle file, Exception exception);
+    }
+    
+    private static class Request {
+        private final FileHandle file;
+        private final Array<Listener> listeners;
+        private byte[] contents;
+
+        public Request(FileHandle file) {
+            this.file = file;
+            listeners = new Array<Listener>();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The atlas packed from the game's loose images, kept on disk between
+ * launches. The cache is named after a hash of the region names and the
+ * contents of the images, so it is only used while every image is
+ * unchanged; otherwise the images are loaded as {@link Pixmap}s, packed and
+ * written to the cache again.
+ * <p>
+ * A cached atlas is an ordinary {@code .atlas} file with its PNG pages and
+ * can be loaded with the {@link com.badlogic.gdx.assets.AssetManager}.
+ */
+public class AtlasCache {
+    /**
+     * Part of the hash, so that changing how pages are packed or written
+     * invalidates existing caches.
+     */
+    public final static int VERSION = 1;
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final FileHandle directory;
+    private final String name;
+    private final Array<String> regionNames;
+    private final Array<FileHandle> images;
+    private FileHandle atlasFile;
+
+    /**
+     * @param name the prefix of every file of the cache.
+     */
+    public AtlasCache(FileHandle directory, String name) {
+        this.directory = directory;
+        this.name = name;
+        regionNames = new Array<String>();
+        images = new Array<FileHandle>();
+    }
+    
+    public void add(String regionName, FileHandle image) {
+        regionNames.add(regionName);
+        images.add(image);
+        atlasFile = null;
+    }
+    
+    public int size() {
+        return images.size;
+    }
+    
+    public String getRegionName(int index) {
+        return regionNames.get(index);
+    }
+    
+    public FileHandle getImage(int index) {
+        return images.get(index);
+    }
+    
+    /**
+     * @return the atlas file for the current images. It only exists if the
+     * cache is valid.
+     */
+    public FileHandle getAtlasFile() {
+        if (atlasFile == null) {
+            atlasFile = directory.child(name + "-" + hash() + ".atlas");
+        }
+        return atlasFile;
+    }
+    
+    public boolean isCached() {
+        return getAtlasFile().exists();
+    }
+    
+    /**
+     * Writes the pages of the packer and the regions the atlas has on them to
+     * the cache and deletes caches of older images. The atlas file is queued
+     * after its pages, so it never exists without them.
+     * @param atlas the atlas generated from the packer.
+     */
+    public void write(PixmapPacker packer, TextureAtlas atlas, AsyncFileWriter writer) {
+        String prefix = getAtlasFile().nameWithoutExtension();
+        StringBuilder builder = new StringBuilder();
+        PixmapIO.PNG png = new PixmapIO.PNG();
+        png.setFlipY(false);
+        try {
+            Array<PixmapPacker.Page> pages = packer.getPages();
+            for (int i = 0; i < pages.size; i++) {
+                PixmapPacker.Page page = pages.get(i);
+                Pixmap pixmap = page.getPixmap();
+                FileHandle pageFile = directory.child(prefix + "-" + (i + 1) + ".png");
+                
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(pixmap.getWidth() * pixmap.getHeight());
+                png.write(bytes, pixmap);
+                writer.write(pageFile, bytes.toByteArray(), null);
+                
+                builder.append('\n').append(pageFile.name()).append('\n');
+                builder.append("size: ").append(pixmap.getWidth()).append(',').append(pixmap.getHeight()).append('\n');
+                builder.append("format: ").append(pixmap.getFormat().name()).append('\n');
+                builder.append("filter: ").append(Texture.TextureFilter.Linear).append(',').append(Texture.TextureFilter.Linear).append('\n');
+                builder.append("repeat: none\n");
+                for (AtlasRegion region : atlas.getRegions()) {
+                    if (region.getTexture() == page.getTexture()) {
+                        appendRegion(builder, region);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error encoding atlas page.", e);
+        } finally {
+            png.dispose();
+        }
+        
+        for (FileHandle file : directory.list()) {
+            if (file.name().startsWith(name + "-") && !file.name().startsWith(prefix)) {
+                file.delete();
+            }
+        }
+        writer.write(getAtlasFile(), builder.toString().getBytes(UTF8), null);
+    }
+    
+    private void appendRegion(StringBuilder builder, AtlasRegion region) {
+        builder.append(region.name).append('\n');
+        builder.append("  rotate: false\n");
+        builder.append("  xy: ").append(region.getRegionX()).append(", ").append(region.getRegionY()).append('\n');
+        builder.append("  size: ").append(region.getRegionWidth()).append(", ").append(region.getRegionHeight()).append('\n');
+        builder.append("  orig: ").append(region.originalWidth).append(", ").append(region.originalHeight).append('\n');
+        builder.append("  offset: ").append((int) region.offsetX).append(", ").append((int) region.offsetY).append('\n');
+        builder.append("  index: ").append(region.index).append('\n');
+    }
+    
+    /**
+     * The first 64 bits of the SHA-1 of the version, the region names and the
+     * contents of the images, as hex.
+     */
+    private String hash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update((byte) VERSION);
+            for (int i = 0; i < images.size; i++) {
+                digest.update(regionNames.get(i).getBytes(UTF8));
+                digest.update((byte) 0);
+                digest.update(images.get(i).readBytes());
+            }
+            
+            byte[] bytes = digest.digest();
+            StringBuilder builder = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                builder.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new GdxRuntimeException("SHA-1 is not available.", e);
+        }
+    }
+}
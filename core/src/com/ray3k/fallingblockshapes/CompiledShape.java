@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.graphics.Color;
+
+/**
+ * Immutable form of a {@link SaveShape} with all four rotations precomputed.
+ * Rotation masks use the same layout as {@link Playfield}: one mask per row
+ * of the 4x4 shape box, ordered from the bottom row upward. Extents are
+ * measured in cells from the bottom left corner of the box.
+ */
+public class CompiledShape {
+    public final static int SIZE = 4;
+    public final static int ROTATIONS = 4;
+    private final Color color;
+    private final int blockCount;
+    private final int[][] masks;
+    private final int[][] blockX;
+    private final int[][] blockY;
+    private final int[] left;
+    private final int[] right;
+    private final int[] bottom;
+    private final int[] top;
+
+    public CompiledShape(SaveShape saveShape) {
+        this(new Color(saveShape.color), rotate(saveShape.grid));
+    }
+    
+    /**
+     * Creates a shape from rotations that were already computed, for
+     * instance by a {@link ShapePack}.
+     * @param rotationMasks one 16 bit mask per rotation, as returned by
+     * {@link #getPackedMask(int)}.
+     */
+    public CompiledShape(Color color, short[] rotationMasks) {
+        this.color = color;
+        masks = new int[ROTATIONS][SIZE];
+        left = new int[ROTATIONS];
+        right = new int[ROTATIONS];
+        bottom = new int[ROTATIONS];
+        top = new int[ROTATIONS];
+        
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            for (int row = 0; row < SIZE; row++) {
+                masks[rotation][row] = (rotationMasks[rotation] >>> (row * SIZE)) & ((1 << SIZE) - 1);
+            }
+        }
+        blockCount = Integer.bitCount(rotationMasks[0] & 0xffff);
+        blockX = new int[ROTATIONS][blockCount];
+        blockY = new int[ROTATIONS][blockCount];
+        
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            left[rotation] = SIZE;
+            bottom[rotation] = SIZE;
+            int index = 0;
+            for (int row = SIZE - 1; row >= 0; row--) {
+                for (int x = 0; x < SIZE; x++) {
+                    if (isOccupied(rotation, x, row)) {
+                        blockX[rotation][index] = x;
+                        blockY[rotation][index] = row;
+                        index++;
+                        
+                        left[rotation] = Math.min(left[rotation], x);
+                        right[rotation] = Math.max(right[rotation], x + 1);
+                        bottom[rotation] = Math.min(bottom[rotation], row);
+                        top[rotation] = Math.max(top[rotation], row + 1);
+                    }
+                }
+            }
+            
+            if (blockCount == 0) {
+                left[rotation] = 0;
+                bottom[rotation] = 0;
+            }
+        }
+    }
+    
+    /**
+     * Packs every rotation of a {@link SaveShape} grid into 16 bits, four
+     * bits per row starting with the bottom row.
+     */
+    public static short[] rotate(boolean[][] saveGrid) {
+        short[] rotationMasks = new short[ROTATIONS];
+        boolean[][] grid = new boolean[SIZE][SIZE];
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                grid[x][y] = saveGrid[x][y];
+            }
+        }
+        
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            int mask = 0;
+            for (int y = 0; y < SIZE; y++) {
+                int row = SIZE - 1 - y;
+                for (int x = 0; x < SIZE; x++) {
+                    if (grid[x][y]) {
+                        mask |= 1 << (row * SIZE + x);
+                    }
+                }
+            }
+            rotationMasks[rotation] = (short) mask;
+            
+            boolean[][] rotated = new boolean[SIZE][SIZE];
+            for (int x = 0; x < SIZE; x++) {
+                for (int y = 0; y < SIZE; y++) {
+                    rotated[x][y] = grid[y][SIZE - 1 - x];
+                }
+            }
+            grid = rotated;
+        }
+        return rotationMasks;
+    }
+    
+    public static int nextRotation(int rotation) {
+        return (rotation + 1) % ROTATIONS;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * @return the row masks of the rotation. The array is shared and must not
+     * be modified.
+     */
+    public int[] getMask(int rotation) {
+        return masks[rotation];
+    }
+    
+    /**
+     * @return all rows of the rotation in 16 bits, four bits per row starting
+     * with the bottom row.
+     */
+    public short getPackedMask(int rotation) {
+        int mask = 0;
+        for (int row = 0; row < SIZE; row++) {
+            mask |= masks[rotation][row] << (row * SIZE);
+        }
+        return (short) mask;
+    }
+    
+    public boolean isOccupied(int rotation, int x, int row) {
+        return (masks[rotation][row] & (1 << x)) != 0;
+    }
+
+    /**
+     * @return the column of the given block within the shape box.
+     */
+    public int getBlockX(int rotation, int block) {
+        return blockX[rotation][block];
+    }
+
+    /**
+     * @return the row of the given block within the shape box, counted from
+     * the bottom.
+     */
+    public int getBlockY(int rotation, int block) {
+        return blockY[rotation][block];
+    }
+
+    public int getLeft(int rotation) {
+        return left[rotation];
+    }
+
+    public int getRight(int rotation) {
+        return right[rotation];
+    }
+
+    public int getBottom(int rotation) {
+        return bottom[rotation];
+    }
+
+    public int getTop(int rotation) {
+        return top[rotation];
+    }
+    
+    public int getSpawnX(int boardWidth) {
+        return (boardWidth - SIZE) / 2;
+    }
+    
+    public int getSpawnY(int boardHeight) {
+        return boardHeight - top[0];
+    }
+}
@@ -13,10 +13,10 @@ import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.ObjectMap;
-import com.badlogic.gdx.utils.TimeUtils;
 import com.esotericsoftware.spine.SkeletonData;
 import com.esotericsoftware.spine.SkeletonRenderer;
 import com.ray3k.fallingblockshapes.SkeletonDataLoader.SkeletonDataLoaderParameter;
+import com.ray3k.fallingblockshapes.simulation.Replay;
 import com.ray3k.fallingblockshapes.states.DesignState;
 import com.ray3k.fallingblockshapes.states.GameOverState;
 import com.ray3k.fallingblockshapes.states.GameState;
@@ -27,31 +27,64 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import javax.swing.JOptionPane;
 
 public class Core extends ApplicationAdapter {
     public final static String VERSION = "1";
     public final static String DATA_PATH = "falling_block_shapes_data";
-    private final static long MS_PER_UPDATE = 10;
+    public final static String SHAPES_PATH = DATA_PATH + "/shapes";
+    public final static String SHAPE_PACK_PATH = DATA_PATH + "/shapes.pack";
+    /**
+     * The packed atlas of the loose images, written on the first launch after
+     * an image changes.
+     */
+    public final static String ATLAS_CACHE_PATH = DATA_PATH + "/cache/atlas";
+    private final static long NANOS_PER_UPDATE = 10000000L;
+    private final static long FAST_FORWARD_NANOS = 15000000L;
+    /**
+     * The length of one fixed update in seconds.
+     */
+    public final static float STEP = NANOS_PER_UPDATE / 1000000000.0f;
+    public final static int DEFAULT_MAX_STEPS_PER_FRAME = 10;
     private AssetManager assetManager;
     private StateManager stateManager;
     private SpriteBatch spriteBatch;
     private PixmapPacker pixmapPacker;
     private long previous;
     private long lag;
+    private int maxStepsPerFrame;
+    private long droppedSteps;
+    private boolean paused;
     private TextureAtlas atlas;
+    private AtlasCache atlasCache;
     private SkeletonRenderer skeletonRenderer;
     private ObjectMap<String, Array<String>> imagePacks;
+    private boolean fastForward;
+    private FrameProfiler profiler;
+    private AllocationTracker allocationTracker;
+    private ShapeCatalog shapeCatalog;
+    private AsyncFileWriter fileWriter;
+    private String startupReplay;
+    private long createTime;
+    private boolean startupReported;
 
     @Override
     public void create() {
+        createTime = System.nanoTime();
         try {
             initManagers();
 
             loadAssets();
+            
+            if (startupReplay != null) {
+                ((GameState) stateManager.getState("game")).playReplay(Replay.read(Gdx.files.local(startupReplay)));
+                ((LoadingState) stateManager.getState("loading")).setNextState("game");
+            }
 
-            previous = TimeUtils.millis();
+            previous = System.nanoTime();
             lag = 0;
+            maxStepsPerFrame = DEFAULT_MAX_STEPS_PER_FRAME;
 
             stateManager.loadState("loading");
         } catch (Exception e) {
@@ -82,6 +115,20 @@ public class Core extends ApplicationAdapter {
         }
     }
     
+    /**
+     * Logs how long it took to draw the first frame after the loading screen,
+     * measured from both the start of the VM and {@link #create()}.
+     */
+    private void reportStartup() {
+        State state = stateManager.getLoadedState();
+        if (state != null && !(state instanceof LoadingState)) {
+            startupReported = true;
+            long createMillis = (System.nanoTime() - createTime) / 1000000L;
+            long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            Gdx.app.log(Core.class.getName(), "Cold start: first frame after loading drawn " + uptimeMillis + " ms after VM start, " + createMillis + " ms after create().");
+        }
+    }
+    
     public void initManagers() {
         assetManager = new AssetManager(new LocalFileHandleResolver(), true);
         assetManager.setLoader(SkeletonData.class, new SkeletonDataLoader(new LocalFileHandleResolver()));
@@ -100,22 +147,60 @@ public class Core extends ApplicationAdapter {
         skeletonRenderer = new SkeletonRenderer();
         
         imagePacks = new ObjectMap<String, Array<String>>();
+        
+        profiler = new FrameProfiler();
+        
+        fileWriter = new AsyncFileWriter();
+        shapeCatalog = new ShapeCatalog(Gdx.files.local(SHAPES_PATH), Gdx.files.local(SHAPE_PACK_PATH), fileWriter);
     }
     
     @Override
     public void render() {
         try {
-            long current = TimeUtils.millis();
+            long current = System.nanoTime();
+            profiler.begin(FrameProfiler.FRAME);
             long elapsed = current - previous;
             previous = current;
-            lag += elapsed;
+            if (!paused) {
+                lag += elapsed;
+            }
 
-            while (lag >= MS_PER_UPDATE) {
-                stateManager.act(MS_PER_UPDATE / 1000.0f);
-                lag -= MS_PER_UPDATE;
+            shapeCatalog.update(elapsed / 1000000000.0f);
+
+            if (fastForward) {
+                //step for most of a frame regardless of how much time has passed
+                do {
+                    step();
+                } while (fastForward && System.nanoTime() - current < FAST_FORWARD_NANOS);
+                lag = 0;
+            } else {
+                int steps = 0;
+                while (lag >= NANOS_PER_UPDATE && steps < maxStepsPerFrame) {
+                    step();
+                    lag -= NANOS_PER_UPDATE;
+                    steps++;
+                }
+                
+                //after a hitch, drop whole steps instead of catching up over the next frames
+                if (lag >= NANOS_PER_UPDATE) {
+                    long dropped = lag / NANOS_PER_UPDATE;
+                    droppedSteps += dropped;
+                    lag -= dropped * NANOS_PER_UPDATE;
+                    Gdx.app.debug(Core.class.getName(), "Dropped " + dropped + " steps.");
+                }
             }
 
-            stateManager.draw(spriteBatch, lag / MS_PER_UPDATE);
+            profiler.begin(FrameProfiler.STATE_DRAW);
+            stateManager.draw(spriteBatch, lag / (float) NANOS_PER_UPDATE);
+            profiler.end(FrameProfiler.STATE_DRAW);
+            
+            if (!startupReported) {
+                reportStartup();
+            }
+            
+            profiler.addBatch(spriteBatch);
+            profiler.endFrame();
+            profiler.end(FrameProfiler.FRAME);
         } catch (Exception e) {
             e.printStackTrace();
             
@@ -144,12 +229,28 @@ public class Core extends ApplicationAdapter {
         }
     }
 
+    private void step() {
+        if (allocationTracker != null) {
+            allocationTracker.begin();
+        }
+        profiler.begin(FrameProfiler.STATE_ACT);
+        stateManager.act(STEP);
+        profiler.end(FrameProfiler.STATE_ACT);
+        if (allocationTracker != null) {
+            profiler.record(FrameProfiler.ALLOCATED_BYTES, allocationTracker.end());
+        }
+    }
+
     @Override
     public void dispose() {
+        //a cached atlas belongs to the asset manager
+        boolean ownsAtlas = atlas != null && !assetManager.containsAsset(atlas);
         assetManager.dispose();
         stateManager.dispose();
         pixmapPacker.dispose();
-        if (atlas != null) {
+        shapeCatalog.dispose();
+        fileWriter.dispose();
+        if (ownsAtlas) {
             atlas.dispose();
         }
     }
@@ -162,31 +263,41 @@ public class Core extends ApplicationAdapter {
         
         assetManager.load(DATA_PATH + "/ui/Falling Block Shapes.json", Skin.class);
 
-        assetManager.load(DATA_PATH + "/gfx/white.png", Pixmap.class);
-        
         assetManager.load(DATA_PATH + "/sfx/down.wav", Sound.class);
         assetManager.load(DATA_PATH + "/sfx/land.wav", Sound.class);
         assetManager.load(DATA_PATH + "/sfx/line.wav", Sound.class);
         assetManager.load(DATA_PATH + "/sfx/rotate.wav", Sound.class);
         assetManager.load(DATA_PATH + "/sfx/bonus.wav", Sound.class);
         
+        atlasCache = new AtlasCache(Gdx.files.local(ATLAS_CACHE_PATH), "game");
         for (String directory : imagePacks.keys()) {
             FileHandle folder = Gdx.files.local(directory);
             for (FileHandle file : folder.list()) {
-                assetManager.load(file.path(), Pixmap.class);
+                atlasCache.add(file.nameWithoutExtension(), file);
                 imagePacks.get(directory).add(file.nameWithoutExtension());
             }
         }
+        atlasCache.add("white", Gdx.files.local(DATA_PATH + "/gfx/white.png"));
+        
+        //the images are only needed to pack them if the cached atlas is out of date
+        if (atlasCache.isCached()) {
+            assetManager.load(atlasCache.getAtlasFile().path(), TextureAtlas.class);
+        } else {
+            for (int i = 0; i < atlasCache.size(); i++) {
+                assetManager.load(atlasCache.getImage(i).path(), Pixmap.class);
+            }
+        }
     }
 
     @Override
     public void resume() {
-        
+        paused = false;
+        previous = System.nanoTime();
     }
 
     @Override
     public void pause() {
-        
+        paused = true;
     }
 
     @Override
@@ -214,6 +325,10 @@ public class Core extends ApplicationAdapter {
         this.atlas = atlas;
     }
 
+    public AtlasCache getAtlasCache() {
+        return atlasCache;
+    }
+
     public SkeletonRenderer getSkeletonRenderer() {
         return skeletonRenderer;
     }
@@ -221,4 +336,97 @@ public class Core extends ApplicationAdapter {
     public ObjectMap<String, Array<String>> getImagePacks() {
         return imagePacks;
     }
+
+    /**
+     * @return the shapes of the shapes directory, shared by every state and
+     * kept up to date as shape files change.
+     */
+    public ShapeCatalog getShapeCatalog() {
+        return shapeCatalog;
+    }
+
+    /**
+     * @return writes files atomically without blocking the render thread.
+     */
+    public AsyncFileWriter getFileWriter() {
+        return fileWriter;
+    }
+
+    public boolean isFastForward() {
+        return fastForward;
+    }
+
+    /**
+     * @param fastForward whether fixed steps run as fast as possible instead
+     * of at real time. Drawing still happens once per frame.
+     */
+    public void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+    }
+
+    public FrameProfiler getProfiler() {
+        return profiler;
+    }
+
+    public boolean isTrackingAllocations() {
+        return allocationTracker != null;
+    }
+
+    /**
+     * @param trackingAllocations whether the bytes allocated by every fixed
+     * step are recorded in the profiler. Has no effect on VMs that cannot
+     * measure allocations per thread.
+     */
+    public void setTrackingAllocations(boolean trackingAllocations) {
+        if (trackingAllocations && allocationTracker == null) {
+            AllocationTracker tracker = new AllocationTracker();
+            if (tracker.isSupported()) {
+                allocationTracker = tracker;
+            }
+        } else if (!trackingAllocations) {
+            allocationTracker = null;
+        }
+    }
+
+    public AllocationTracker getAllocationTracker() {
+        return allocationTracker;
+    }
+
+    public int getMaxStepsPerFrame() {
+        return maxStepsPerFrame;
+    }
+
+    /**
+     * @param maxStepsPerFrame the most fixed steps run in a single frame.
+     * Time beyond that is dropped so the game slows down instead of
+     * stuttering through a burst of steps.
+     */
+    public void setMaxStepsPerFrame(int maxStepsPerFrame) {
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * @return the number of steps skipped because a frame took longer than
+     * the max steps per frame allowed.
+     */
+    public long getDroppedSteps() {
+        return droppedSteps;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public String getStartupReplay() {
+        return startupReplay;
+    }
+
+    /**
+     * @param startupReplay the local path of a replay to play as soon as the
+     * assets are loaded, or null to start at the menu. Must be set before
+     * {@link #create()}.
+     */
+    public void setStartupReplay(String startupReplay) {
+        this.startupReplay = startupReplay;
+    }
 }
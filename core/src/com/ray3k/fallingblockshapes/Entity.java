@@ -25,51 +25,74 @@ package com.ray3k.fallingblockshapes;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Pool;
 import com.ray3k.fallingblockshapes.Core;
 import com.ray3k.fallingblockshapes.Core;
 import com.ray3k.fallingblockshapes.EntityManager;
 
-public abstract class Entity {
+public abstract class Entity implements Pool.Poolable {
+    public static final int DEFAULT_LAYER = 1;
     private static final Vector2 temp = new Vector2();
     private final Vector2 position;
     private final Vector2 speed;
     private final Vector2 offset;
     private final Vector2 scale;
     private float rotation;
+    private final Vector2 previousPosition;
+    private float previousRotation;
+    private boolean interpolating;
+    private boolean snapped;
     private TextureRegion textureRegion;
     private boolean destroyed;
-    private final EntityManager manager;
+    private EntityManager manager;
+    EntityPool<?> pool;
     private final Core core;
     private final Vector2 gravity;
     private int depth;
     private final Rectangle collisionBox;
     private final Vector2 collisionBoxPosition;
     private boolean checkingCollisions;
+    private int collisionLayer;
+    private int collisionMask;
 
     public Entity(EntityManager manager, Core core) {
+        this(core);
+        manager.addEntity(this);
+        
+        create();
+    }
+    
+    /**
+     * Creates an entity that is not yet registered with a manager. Used by
+     * {@link EntityPool} subclasses, which hand the entity to a manager through
+     * {@link EntityManager#obtain(EntityPool)}.
+     */
+    protected Entity(Core core) {
         position = new Vector2();
         speed = new Vector2();
         offset = new Vector2();
         scale = new Vector2();
         gravity = new Vector2();
+        previousPosition = new Vector2();
         
         scale.x = 1.0f;
         scale.y = 1.0f;
         rotation = 0.0f;
         depth = 0;
         destroyed = false;
-        this.manager = manager;
-        manager.addEntity(this);
         this.core = core;
         collisionBox = new Rectangle();
         collisionBoxPosition = new Vector2();
         collisionBoxPosition.x = 0;
         collisionBoxPosition.y = 0;
         checkingCollisions = false;
-        
-        create();
+        collisionLayer = DEFAULT_LAYER;
+        collisionMask = ~0;
+        interpolating = true;
+        snapped = true;
     }
     
     public abstract void create();
@@ -90,11 +113,98 @@ public abstract class Entity {
             destroy();
         }
     }
+    
+    /**
+     * Restores the motion and lifecycle state of a pooled entity before it is
+     * reused. Depth, texture region, collision box size and collision layers
+     * are configuration and are kept. Subclasses that hold state of their own
+     * must override this and call the super method.
+     */
+    @Override
+    public void reset() {
+        position.setZero();
+        speed.setZero();
+        offset.setZero();
+        scale.set(1.0f, 1.0f);
+        gravity.setZero();
+        rotation = 0.0f;
+        destroyed = false;
+        manager = null;
+        collisionBox.setPosition(0.0f, 0.0f);
+        collisionBoxPosition.setZero();
+        checkingCollisions = false;
+        snapped = true;
+    }
+    
+    /**
+     * Keeps the current transform as the one drawn at the start of the step
+     * that is about to run. Called by {@link EntityManager#beginStep()}.
+     */
+    void storePreviousTransform() {
+        previousPosition.set(position);
+        previousRotation = rotation;
+        snapped = false;
+    }
+    
+    /**
+     * Draws the entity at its current transform until the end of the step
+     * instead of moving it there from the previous one. Use after teleporting
+     * an entity.
+     */
+    public void snap() {
+        snapped = true;
+    }
+    
+    /**
+     * @param alpha the fraction of a step that has passed since the last
+     * update.
+     * @return the x position to draw at, between the position at the end of
+     * the previous step and the current one.
+     */
+    public float getInterpolatedX(float alpha) {
+        if (interpolating && !snapped) {
+            return previousPosition.x + (position.x - previousPosition.x) * alpha;
+        } else {
+            return position.x;
+        }
+    }
+    
+    public float getInterpolatedY(float alpha) {
+        if (interpolating && !snapped) {
+            return previousPosition.y + (position.y - previousPosition.y) * alpha;
+        } else {
+            return position.y;
+        }
+    }
+    
+    public float getInterpolatedRotation(float alpha) {
+        if (interpolating && !snapped) {
+            return MathUtils.lerpAngleDeg(previousRotation, rotation, alpha);
+        } else {
+            return rotation;
+        }
+    }
+
+    public boolean isInterpolating() {
+        return interpolating;
+    }
+
+    /**
+     * @param interpolating false to always draw the entity at its current
+     * transform, for entities whose moves should appear as instant snaps.
+     */
+    public void setInterpolating(boolean interpolating) {
+        this.interpolating = interpolating;
+    }
 
     public Vector2 getPosition() {
         return position.cpy();
     }
     
+    public Vector2 getPosition(Vector2 out) {
+        return out.set(position);
+    }
+    
     public float getX() {
         return position.x;
     }
@@ -183,6 +293,10 @@ public abstract class Entity {
         return offset.cpy();
     }
     
+    public Vector2 getOffset(Vector2 out) {
+        return out.set(offset);
+    }
+    
     public float getOffsetX() {
         return offset.x;
     }
@@ -203,6 +317,10 @@ public abstract class Entity {
         return scale.cpy();
     }
     
+    public Vector2 getScale(Vector2 out) {
+        return out.set(scale);
+    }
+    
     public float getScaleX() {
         return scale.x;
     }
@@ -235,6 +353,10 @@ public abstract class Entity {
         return manager;
     }
 
+    void setManager(EntityManager manager) {
+        this.manager = manager;
+    }
+
     public TextureRegion getTextureRegion() {
         return textureRegion;
     }
@@ -271,13 +393,22 @@ public abstract class Entity {
     public Vector2 getGravity() {
         return gravity.cpy();
     }
+    
+    public Vector2 getGravity(Vector2 out) {
+        return out.set(gravity);
+    }
 
     public int getDepth() {
         return depth;
     }
 
     public void setDepth(int depth) {
-        this.depth = depth;
+        if (this.depth != depth) {
+            this.depth = depth;
+            if (manager != null) {
+                manager.depthChanged(this);
+            }
+        }
     }
 
     public Rectangle getCollisionBox() {
@@ -292,6 +423,33 @@ public abstract class Entity {
         this.checkingCollisions = checkingCollisions;
     }
 
+    public int getCollisionLayer() {
+        return collisionLayer;
+    }
+
+    /**
+     * @param collisionLayer bit flags of the layers this entity belongs to.
+     */
+    public void setCollisionLayer(int collisionLayer) {
+        this.collisionLayer = collisionLayer;
+    }
+
+    public int getCollisionMask() {
+        return collisionMask;
+    }
+
+    /**
+     * @param collisionMask bit flags of the layers this entity receives
+     * collisions from.
+     */
+    public void setCollisionMask(int collisionMask) {
+        this.collisionMask = collisionMask;
+    }
+    
+    public boolean canCollideWith(Entity other) {
+        return (collisionMask & other.collisionLayer) != 0;
+    }
+
     public void setCollisionBoxX(float collisionBoxX) {
         collisionBoxPosition.x = collisionBoxX;
     }
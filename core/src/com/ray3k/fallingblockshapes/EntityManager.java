@@ -26,28 +26,136 @@ package com.ray3k.fallingblockshapes;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.utils.Array;
-import java.util.Comparator;
-import java.util.Iterator;
+import com.badlogic.gdx.utils.ObjectMap;
 
 public class EntityManager {
     private final Array<Entity> entities;
+    private final EntityView<Entity> entitiesView;
+    private final Array<TypeRegistry> registries;
+    private final ObjectMap<Class<?>, TypeRegistry> registriesByType;
+    private final RenderQueue renderQueue;
+    private final Array<Entity> released;
+    private SpatialHash broadPhase;
     
     public EntityManager() {
         entities = new Array<Entity>();
+        entitiesView = new EntityView<Entity>(entities);
+        registries = new Array<TypeRegistry>();
+        registriesByType = new ObjectMap<Class<?>, TypeRegistry>();
+        renderQueue = new RenderQueue();
+        released = new Array<Entity>();
+    }
+    
+    /**
+     * Dispatches collisions through a uniform grid instead of testing every
+     * pair of entities.
+     * @param cellSize size of a grid cell, ideally close to the size of the
+     * typical collision box.
+     */
+    public void enableBroadPhase(float cellSize) {
+        broadPhase = new SpatialHash(cellSize);
+        for (Entity entity : entities) {
+            if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
+                broadPhase.update(entity);
+            }
+        }
+    }
+    
+    public void disableBroadPhase() {
+        if (broadPhase != null) {
+            broadPhase.clear();
+            broadPhase = null;
+        }
+    }
+    
+    public boolean isBroadPhaseEnabled() {
+        return broadPhase != null;
     }
     
     public void addEntity(Entity entity) {
+        entity.setManager(this);
         entities.add(entity);
+        renderQueue.invalidate();
+        
+        for (int i = 0; i < registries.size; i++) {
+            TypeRegistry registry = registries.get(i);
+            if (registry.type.isInstance(entity)) {
+                registry.entities.add(entity);
+            }
+        }
     }
     
-    public Array<Entity> getEntities() {
-        return new Array<Entity>(entities);
+    /**
+     * Takes an entity out of the pool, registers it with this manager and
+     * calls {@link Entity#create()}. The entity goes back to the pool after it
+     * has been disposed and removed at the end of a tick.
+     */
+    public <T extends Entity> T obtain(EntityPool<T> pool) {
+        T entity = pool.obtain();
+        entity.pool = pool;
+        addEntity(entity);
+        entity.create();
+        return entity;
+    }
+    
+    /**
+     * Disposes every entity and returns pooled ones to their pools.
+     */
+    public void clear() {
+        for (int i = 0; i < entities.size; i++) {
+            entities.get(i).dispose();
+        }
+        removeDestroyed();
+    }
+    
+    void depthChanged(Entity entity) {
+        renderQueue.invalidate();
+    }
+    
+    public EntityView<Entity> getEntities() {
+        return entitiesView;
+    }
+    
+    /**
+     * Returns a live view of every entity that is an instance of the given
+     * type. The registry for a type is created on first request and kept up
+     * to date as entities are added and removed.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Entity> EntityView<T> ofType(Class<T> type) {
+        TypeRegistry registry = registriesByType.get(type);
+        if (registry == null) {
+            registry = new TypeRegistry(type);
+            for (int i = 0; i < entities.size; i++) {
+                Entity entity = entities.get(i);
+                if (!entity.isDestroyed() && type.isInstance(entity)) {
+                    registry.entities.add(entity);
+                }
+            }
+            registries.add(registry);
+            registriesByType.put(type, registry);
+        }
+        return (EntityView<T>) registry.view;
+    }
+    
+    /**
+     * Keeps the transform of every entity as the one drawn at the start of
+     * the coming step. Call once per step before anything moves entities,
+     * including listeners of a simulation that is stepped before
+     * {@link #act(float)}.
+     */
+    public void beginStep() {
+        for (int index = 0; index < entities.size; index++) {
+            Entity entity = entities.get(index);
+            if (!entity.isDestroyed()) {
+                entity.storePreviousTransform();
+            }
+        }
     }
     
     public void act(float delta) {
-        Iterator<Entity> iter = entities.iterator();
-        while (iter.hasNext()) {
-            Entity entity = iter.next();
+        for (int index = 0; index < entities.size; index++) {
+            Entity entity = entities.get(index);
             if (!entity.isDestroyed()) {
                 entity.addXspeed(entity.getGravityX() * delta);
                 entity.addYspeed(entity.getGravityY() * delta);
@@ -58,47 +166,124 @@ public class EntityManager {
                 entity.getCollisionBox().setPosition(entity.getX() + entity.getCollisionBoxX(), entity.getY() + entity.getCollisionBoxY());
                 entity.act(delta);
                 
-                for (int i = 0; i < entities.size ; i++) {
+                if (broadPhase != null) {
                     if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
-                        Entity other = entities.get(i);
-                        if (other.isCheckingCollisions()) {
-                            if (entity.getCollisionBox().overlaps(other.getCollisionBox())) {
-                                entity.collision(other);
+                        broadPhase.update(entity);
+                        broadPhase.dispatchCollisions(entity);
+                    } else {
+                        broadPhase.remove(entity);
+                    }
+                } else {
+                    for (int i = 0; i < entities.size ; i++) {
+                        if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
+                            Entity other = entities.get(i);
+                            if (other.isCheckingCollisions() && entity.canCollideWith(other)) {
+                                if (entity.getCollisionBox().overlaps(other.getCollisionBox())) {
+                                    entity.collision(other);
+                                }
                             }
+                        } else {
+                            break;
                         }
-                    } else {
-                        break;
                     }
                 }
-            } else {
-                iter.remove();
             }
         }
         
-        iter = entities.iterator();
-        while (iter.hasNext()) {
-            Entity entity = iter.next();
-            
+        removeDestroyed();
+        
+        for (int index = 0; index < entities.size; index++) {
+            Entity entity = entities.get(index);
             entity.act_end(delta);
         }
     }
     
-    public void draw(SpriteBatch spriteBatch, float delta) {
-        entities.sort(new Comparator<Entity>() {
-            @Override
-            public int compare(Entity o1, Entity o2) {
-                return o2.getDepth() - o1.getDepth();
+    /**
+     * Removes destroyed entities from storage and from every type registry in
+     * a single pass each, keeping the order of the remaining entities. Pooled
+     * entities are only freed once nothing in the manager refers to them.
+     */
+    private void removeDestroyed() {
+        int write = 0;
+        for (int read = 0; read < entities.size; read++) {
+            Entity entity = entities.get(read);
+            if (entity.isDestroyed()) {
+                if (broadPhase != null) {
+                    broadPhase.remove(entity);
+                }
+                if (entity.pool != null) {
+                    released.add(entity);
+                }
+            } else {
+                entities.set(write++, entity);
             }
-        });
+        }
         
-        for (Entity entity : entities) {
+        if (write < entities.size) {
+            entities.truncate(write);
+            
+            for (int i = 0; i < registries.size; i++) {
+                compact(registries.get(i).entities);
+            }
+            
+            renderQueue.removeDestroyed();
+            
+            for (int i = 0; i < released.size; i++) {
+                Entity entity = released.get(i);
+                entity.pool.release(entity);
+            }
+            released.clear();
+        }
+    }
+    
+    static void compact(Array<Entity> array) {
+        int write = 0;
+        for (int read = 0; read < array.size; read++) {
+            Entity entity = array.get(read);
             if (!entity.isDestroyed()) {
-                if (entity.getTextureRegion() != null) {
-                    spriteBatch.draw(entity.getTextureRegion(), entity.getX() + entity.getXspeed() * delta, entity.getY() + entity.getYspeed() * delta, entity.getOffsetX(), entity.getOffsetY(), entity.getTextureRegion().getRegionWidth(), entity.getTextureRegion().getRegionHeight(), entity.getScaleX(), entity.getScaleY(), entity.getRotation());
+                array.set(write++, entity);
+            }
+        }
+        array.truncate(write);
+    }
+    
+    /**
+     * Draws every entity between its transform at the start of the last step
+     * and its current one.
+     * @param delta the fraction of a fixed step that has passed since the
+     * last update, between 0 and 1.
+     */
+    public void draw(SpriteBatch spriteBatch, float delta) {
+        renderQueue.update(entities);
+        
+        for (int bucketIndex = 0; bucketIndex < renderQueue.getBucketCount(); bucketIndex++) {
+            Array<Entity> bucket = renderQueue.getBucket(bucketIndex);
+            for (int i = 0; i < bucket.size; i++) {
+                Entity entity = bucket.get(i);
+                if (!entity.isDestroyed()) {
+                    if (entity.getTextureRegion() != null) {
+                        spriteBatch.draw(entity.getTextureRegion(), entity.getInterpolatedX(delta), entity.getInterpolatedY(delta), entity.getOffsetX(), entity.getOffsetY(), entity.getTextureRegion().getRegionWidth(), entity.getTextureRegion().getRegionHeight(), entity.getScaleX(), entity.getScaleY(), entity.getInterpolatedRotation(delta));
+                    }
+
+                    entity.draw(spriteBatch, delta);
                 }
-                
-                entity.draw(spriteBatch, delta);
             }
         }
     }
+
+    public RenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+    
+    private static class TypeRegistry {
+        private final Class<?> type;
+        private final Array<Entity> entities;
+        private final EntityView<Entity> view;
+
+        public TypeRegistry(Class<?> type) {
+            this.type = type;
+            entities = new Array<Entity>();
+            view = new EntityView<Entity>(entities);
+        }
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Pool of entities of a single type. Entities are taken out of the pool with
+ * {@link EntityManager#obtain(EntityPool)} and returned automatically once
+ * they are disposed and the manager has removed them. {@link Entity#reset()}
+ * is called when an entity is returned.
+ */
+public abstract class EntityPool<T extends Entity> extends Pool<T> {
+
+    public EntityPool(int initialCapacity, int max) {
+        super(initialCapacity, max);
+    }
+    
+    @SuppressWarnings("unchecked")
+    void release(Entity entity) {
+        free((T) entity);
+    }
+}
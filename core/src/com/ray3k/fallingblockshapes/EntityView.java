@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only view of entities owned by an {@link EntityManager}. The view is
+ * backed by the manager's own storage, so it never copies and always reflects
+ * the current contents. Entities destroyed during the current tick remain
+ * visible until the manager compacts its storage at the end of
+ * {@link EntityManager#act(float)}.
+ */
+public class EntityView<T extends Entity> implements Iterable<T> {
+    private final Array<T> items;
+    private ViewIterator iterator1;
+    private ViewIterator iterator2;
+
+    EntityView(Array<T> items) {
+        this.items = items;
+    }
+    
+    public int size() {
+        return items.size;
+    }
+    
+    public boolean isEmpty() {
+        return items.size == 0;
+    }
+    
+    public T get(int index) {
+        return items.get(index);
+    }
+    
+    public boolean contains(T entity) {
+        return items.contains(entity, true);
+    }
+
+    /**
+     * Returns one of two reused iterators, so at most two iterations over the
+     * same view may be nested.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        if (iterator1 == null) {
+            iterator1 = new ViewIterator();
+            iterator2 = new ViewIterator();
+        }
+        
+        if (!iterator1.valid) {
+            iterator1.index = 0;
+            iterator1.valid = true;
+            iterator2.valid = false;
+            return iterator1;
+        }
+        
+        iterator2.index = 0;
+        iterator2.valid = true;
+        iterator1.valid = false;
+        return iterator2;
+    }
+    
+    private class ViewIterator implements Iterator<T> {
+        private int index;
+        private boolean valid;
+
+        @Override
+        public boolean hasNext() {
+            if (!valid) {
+                throw new GdxRuntimeException("#iterator() cannot be used nested.");
+            }
+            return index < items.size;
+        }
+
+        @Override
+        public T next() {
+            if (index >= items.size) {
+                throw new NoSuchElementException(String.valueOf(index));
+            }
+            if (!valid) {
+                throw new GdxRuntimeException("#iterator() cannot be used nested.");
+            }
+            return items.get(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Entities are removed by disposing them.");
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/**
+ * Records how long each phase of a frame takes and a few per-frame counters
+ * into {@link Histogram}s. Phases are timed with {@link #begin(int)} and
+ * {@link #end(int)} and may be entered several times per frame, for instance
+ * once per fixed step.
+ */
+public class FrameProfiler {
+    public final static int FRAME = 0;
+    public final static int STATE_ACT = 1;
+    public final static int STATE_DRAW = 2;
+    public final static int ENTITY_ACT = 3;
+    public final static int ENTITY_DRAW = 4;
+    public final static int STAGE_ACT = 5;
+    public final static int STAGE_DRAW = 6;
+    public final static int ASSET_LOADING = 7;
+    public final static int RENDER_CALLS = 8;
+    public final static int MAX_SPRITES_IN_BATCH = 9;
+    public final static int ENTITIES = 10;
+    public final static int ALLOCATED_BYTES = 11;
+    private final static String[] NAMES = {"frame", "state act", "state draw", "entity act", "entity draw", "stage act", "stage draw", "asset loading", "render calls", "max sprites in batch", "entities", "bytes per step"};
+    private final static int FIRST_COUNTER = RENDER_CALLS;
+    private final Histogram[] histograms;
+    private final long[] startTimes;
+    private int renderCalls;
+    private int maxSpritesInBatch;
+    private boolean enabled;
+
+    public FrameProfiler() {
+        histograms = new Histogram[NAMES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        startTimes = new long[NAMES.length];
+        enabled = true;
+    }
+    
+    public void begin(int phase) {
+        if (enabled) {
+            startTimes[phase] = System.nanoTime();
+        }
+    }
+    
+    public void end(int phase) {
+        if (enabled) {
+            histograms[phase].record(System.nanoTime() - startTimes[phase]);
+        }
+    }
+    
+    public void record(int counter, long value) {
+        if (enabled) {
+            histograms[counter].record(value);
+        }
+    }
+    
+    /**
+     * Adds the render calls of a batch that was used this frame. The
+     * counters of the batch are reset.
+     */
+    public void addBatch(Batch batch) {
+        if (batch instanceof SpriteBatch) {
+            SpriteBatch spriteBatch = (SpriteBatch) batch;
+            renderCalls += spriteBatch.totalRenderCalls;
+            maxSpritesInBatch = Math.max(maxSpritesInBatch, spriteBatch.maxSpritesInBatch);
+            spriteBatch.totalRenderCalls = 0;
+            spriteBatch.maxSpritesInBatch = 0;
+        }
+    }
+    
+    /**
+     * Records the batch counters gathered with {@link #addBatch(Batch)} since
+     * the last frame.
+     */
+    public void endFrame() {
+        record(RENDER_CALLS, renderCalls);
+        record(MAX_SPRITES_IN_BATCH, maxSpritesInBatch);
+        renderCalls = 0;
+        maxSpritesInBatch = 0;
+    }
+    
+    public void clear() {
+        for (Histogram histogram : histograms) {
+            histogram.clear();
+        }
+    }
+    
+    /**
+     * Appends one line per phase and counter with its median, 99th
+     * percentile and maximum. Times are in microseconds.
+     */
+    public void appendSummary(StringBuilder builder) {
+        for (int i = 0; i < histograms.length; i++) {
+            Histogram histogram = histograms[i];
+            if (histogram.getCount() > 0) {
+                builder.append(NAMES[i]).append(": ");
+                appendValue(builder, i, histogram.getPercentile(50));
+                builder.append(" / ");
+                appendValue(builder, i, histogram.getPercentile(99));
+                builder.append(" / ");
+                appendValue(builder, i, histogram.getMax());
+                builder.append('\n');
+            }
+        }
+    }
+    
+    private void appendValue(StringBuilder builder, int index, long value) {
+        if (index < FIRST_COUNTER) {
+            builder.append(value / 1000).append("us");
+        } else {
+            builder.append(value);
+        }
+    }
+    
+    /**
+     * Writes every phase and counter with its sample count, mean and
+     * percentiles. Times are in nanoseconds.
+     */
+    public void writeCsv(FileHandle file) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("name,unit,count,mean,p50,p90,p99,max\n");
+        for (int i = 0; i < histograms.length; i++) {
+            Histogram histogram = histograms[i];
+            builder.append(NAMES[i]).append(',');
+            builder.append(i < FIRST_COUNTER ? "ns" : i == ALLOCATED_BYTES ? "bytes" : "count").append(',');
+            builder.append(histogram.getCount()).append(',');
+            builder.append((long) histogram.getMean()).append(',');
+            builder.append(histogram.getPercentile(50)).append(',');
+            builder.append(histogram.getPercentile(90)).append(',');
+            builder.append(histogram.getPercentile(99)).append(',');
+            builder.append(histogram.getMax()).append('\n');
+        }
+        file.writeString(builder.toString(), false);
+    }
+    
+    public Histogram getHistogram(int index) {
+        return histograms[index];
+    }
+    
+    public static String getName(int index) {
+        return NAMES[index];
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+}
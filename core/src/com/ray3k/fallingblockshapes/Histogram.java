@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+/**
+ * Counts non-negative values in a fixed set of log-linear buckets. Every
+ * power of two is split into {@link #SUB_BUCKETS} buckets, so any percentile
+ * is accurate to within about 6% without storing the values. Recording is a
+ * handful of integer operations and never allocates.
+ */
+public class Histogram {
+    private final static int SUB_BUCKET_BITS = 4;
+    public final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long max;
+
+    public Histogram() {
+        counts = new long[BUCKET_COUNT];
+    }
+    
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+    
+    public void clear() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+    
+    /**
+     * @param percentile between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile, capped at
+     * the largest recorded value.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max);
+            }
+        }
+        return max;
+    }
+    
+    private static int bucketOf(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        if (magnitude < SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+    
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long base = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return base + (1L << shift) - 1;
+    }
+
+    public long getCount() {
+        return count;
+    }
+    
+    public double getMean() {
+        return count > 0 ? sum / (double) count : 0;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
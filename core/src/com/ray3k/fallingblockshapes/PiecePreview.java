@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.scenes.scene2d.ui.Container;
+import com.badlogic.gdx.scenes.scene2d.ui.Image;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.Table;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonRenderer;
+
+/**
+ * A column of upcoming shapes, the first one larger than the rest. The
+ * widget for a shape is built the first time the shape appears in a slot
+ * and reused afterwards, so showing the next piece only swaps the actor of
+ * each slot.
+ */
+public class PiecePreview extends Table {
+    public final static float FIRST_SIZE = 116.0f;
+    public final static float SIZE = 72.0f;
+    private final SkeletonData skeletonData;
+    private final SkeletonRenderer skeletonRenderer;
+    private final Skin skin;
+    private final String background;
+    private final IntMap<SpineDrawable> drawables;
+    private final Array<Slot> slots;
+    private int count;
+
+    public PiecePreview(SkeletonData skeletonData, SkeletonRenderer skeletonRenderer, Skin skin, String background) {
+        this.skeletonData = skeletonData;
+        this.skeletonRenderer = skeletonRenderer;
+        this.skin = skin;
+        this.background = background;
+        drawables = new IntMap<SpineDrawable>();
+        slots = new Array<Slot>();
+        top();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param count how many upcoming shapes are shown.
+     */
+    public void setCount(int count) {
+        this.count = count;
+        while (slots.size < count) {
+            Container<Table> container = new Container<Table>();
+            container.setBackground(skin.getDrawable(background));
+            container.fill();
+            slots.add(new Slot(container));
+        }
+        
+        clearChildren();
+        for (int i = 0; i < count; i++) {
+            float size = i == 0 ? FIRST_SIZE : SIZE;
+            add(slots.get(i).container).size(size).padBottom(10.0f);
+            row();
+        }
+    }
+    
+    public void show(int index, CompiledShape shape) {
+        Slot slot = slots.get(index);
+        if (slot.shape != shape) {
+            slot.shape = shape;
+            Table widget = slot.widgets.get(shape);
+            if (widget == null) {
+                widget = createWidget(shape);
+                slot.widgets.put(shape, widget);
+            }
+            slot.container.setActor(widget);
+        }
+    }
+    
+    private Table createWidget(CompiledShape shape) {
+        int color = Color.rgba8888(shape.getColor());
+        SpineDrawable drawable = drawables.get(color);
+        if (drawable == null) {
+            drawable = new SpineDrawable(skeletonData, skeletonRenderer);
+            drawable.getSkeleton().findSlot("tetromino").getColor().set(shape.getColor());
+            drawables.put(color, drawable);
+        }
+        
+        Table table = new Table();
+        for (int y = 0; y < CompiledShape.SIZE; y++) {
+            int row = CompiledShape.SIZE - 1 - y;
+            for (int x = 0; x < CompiledShape.SIZE; x++) {
+                if (shape.isOccupied(0, x, row)) {
+                    table.add(new Image(drawable)).grow();
+                } else {
+                    table.add().grow();
+                }
+            }
+            table.row();
+        }
+        return table;
+    }
+    
+    private static class Slot {
+        private final Container<Table> container;
+        private final ObjectMap<CompiledShape, Table> widgets;
+        private CompiledShape shape;
+
+        public Slot(Container<Table> container) {
+            this.container = container;
+            widgets = new ObjectMap<CompiledShape, Table>();
+        }
+    }
+}
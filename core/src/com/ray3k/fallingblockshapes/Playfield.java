@@ -0,0 +1,261 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Locked cells of the board stored as one bitmask per row. Bit {@code x} of
+ * row {@code y} is set when column {@code x} of that row is occupied. Row 0
+ * is the bottom of the board.
+ * <p>
+ * Shapes are passed as an array of row masks ordered from the bottom row of
+ * the shape upward, positioned by the cell of their bottom left corner.
+ * <p>
+ * The number of filled cells in each row is kept up to date as shapes are
+ * locked, so line clears only have to look at the rows a locked shape
+ * touched.
+ */
+public class Playfield {
+    public final static int DEFAULT_WIDTH = 10;
+    public final static int DEFAULT_HEIGHT = 24;
+    private final static int OUT_OF_BOUNDS = 0x80000000;
+    private final int width;
+    private final int height;
+    private final int fullRow;
+    private final int[] rows;
+    private final int[] counts;
+    private final int[] clearedRows;
+    private int stackHeight;
+    private final Array<LineClearListener> lineClearListeners;
+
+    public Playfield(int width, int height) {
+        if (width < 1 || width > 31) {
+            throw new IllegalArgumentException("Playfield width must be between 1 and 31: " + width);
+        }
+        
+        this.width = width;
+        this.height = height;
+        fullRow = (1 << width) - 1;
+        rows = new int[height];
+        counts = new int[height];
+        clearedRows = new int[height];
+        stackHeight = 0;
+        lineClearListeners = new Array<LineClearListener>();
+    }
+    
+    public interface LineClearListener {
+        /**
+         * Called after full rows have been removed from the playfield.
+         * @param rows the indices of the cleared rows before the playfield
+         * was compacted, in ascending order. Only the first {@code count}
+         * entries are valid and the array is reused between calls.
+         */
+        public void linesCleared(Playfield playfield, int[] rows, int count);
+    }
+    
+    public void addLineClearListener(LineClearListener listener) {
+        lineClearListeners.add(listener);
+    }
+    
+    public void removeLineClearListener(LineClearListener listener) {
+        lineClearListeners.removeValue(listener, true);
+    }
+    
+    public boolean fits(CompiledShape shape, int rotation, int x, int y) {
+        return fits(shape.getMask(rotation), x, y);
+    }
+    
+    public boolean fits(int[] shape, int x, int y) {
+        for (int i = 0; i < shape.length; i++) {
+            int mask = shape[i];
+            if (mask != 0) {
+                int row = y + i;
+                if (row < 0 || row >= height) {
+                    return false;
+                }
+                
+                int placed = place(mask, x);
+                if ((placed & ~fullRow) != 0 || (rows[row] & placed) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    public int dropDistance(CompiledShape shape, int rotation, int x, int y) {
+        return dropDistance(shape.getMask(rotation), x, y);
+    }
+    
+    /**
+     * @return the number of rows the shape can fall before it lands, or -1 if
+     * it does not fit at the given position.
+     */
+    public int dropDistance(int[] shape, int x, int y) {
+        if (!fits(shape, x, y)) {
+            return -1;
+        }
+        
+        int distance = 0;
+        while (distance < y + shape.length && fits(shape, x, y - distance - 1)) {
+            distance++;
+        }
+        return distance;
+    }
+    
+    public void lock(CompiledShape shape, int rotation, int x, int y) {
+        lock(shape.getMask(rotation), x, y);
+    }
+    
+    public void lock(int[] shape, int x, int y) {
+        for (int i = 0; i < shape.length; i++) {
+            int mask = shape[i];
+            int row = y + i;
+            if (mask != 0 && row >= 0 && row < height) {
+                int added = place(mask, x) & fullRow & ~rows[row];
+                rows[row] |= added;
+                counts[row] += Integer.bitCount(added);
+                if (row >= stackHeight) {
+                    stackHeight = row + 1;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes every full row between {@code bottom} inclusive and
+     * {@code top} exclusive and moves the rows above them down. Listeners are
+     * notified if any rows were cleared.
+     * @return the number of cleared rows.
+     */
+    public int clearLines(int bottom, int top) {
+        bottom = Math.max(bottom, 0);
+        top = Math.min(top, stackHeight);
+        
+        int count = 0;
+        for (int y = bottom; y < top; y++) {
+            if (counts[y] == width) {
+                clearedRows[count++] = y;
+            }
+        }
+        
+        if (count > 0) {
+            int write = clearedRows[0];
+            int next = 0;
+            for (int read = write; read < stackHeight; read++) {
+                if (next < count && clearedRows[next] == read) {
+                    next++;
+                } else {
+                    rows[write] = rows[read];
+                    counts[write] = counts[read];
+                    write++;
+                }
+            }
+            
+            for (int y = write; y < stackHeight; y++) {
+                rows[y] = 0;
+                counts[y] = 0;
+            }
+            stackHeight = write;
+            
+            for (LineClearListener listener : lineClearListeners) {
+                listener.linesCleared(this, clearedRows, count);
+            }
+        }
+        
+        return count;
+    }
+    
+    public boolean isOccupied(int x, int y) {
+        if (x < 0 || x >= width || y < 0) {
+            return true;
+        } else if (y >= height) {
+            return false;
+        } else {
+            return (rows[y] & (1 << x)) != 0;
+        }
+    }
+    
+    public boolean isRowFull(int y) {
+        return counts[y] == width;
+    }
+    
+    /**
+     * Copies the cells of another playfield of the same size into this one.
+     */
+    public void set(Playfield other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Playfield sizes do not match.");
+        }
+        
+        System.arraycopy(other.rows, 0, rows, 0, height);
+        System.arraycopy(other.counts, 0, counts, 0, height);
+        stackHeight = other.stackHeight;
+    }
+    
+    public void clear() {
+        for (int y = 0; y < height; y++) {
+            rows[y] = 0;
+            counts[y] = 0;
+        }
+        stackHeight = 0;
+    }
+
+    public int getRow(int y) {
+        return rows[y];
+    }
+
+    public int getRowCount(int y) {
+        return counts[y];
+    }
+
+    /**
+     * @return the number of rows from the bottom that contain at least one
+     * locked cell.
+     */
+    public int getStackHeight() {
+        return stackHeight;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+    
+    private int place(int mask, int x) {
+        if (x >= 0) {
+            if (x < 32 && (mask << x) >>> x == mask) {
+                return mask << x;
+            }
+        } else if (x > -32 && (mask >>> -x) << -x == mask) {
+            return mask >>> -x;
+        }
+        return OUT_OF_BOUNDS;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Entities grouped into buckets by depth, ordered from the highest depth to
+ * the lowest. Buckets are only rebuilt after {@link #invalidate()} is called,
+ * which happens when an entity is added or changes its depth. Entities with
+ * the same depth keep the order in which they were added.
+ */
+public class RenderQueue {
+    private final static long NANOS_PER_SECOND = 1000000000L;
+    private final IntMap<Array<Entity>> buckets;
+    private final IntArray depths;
+    private boolean dirty;
+    private int sortCount;
+    private int sortsThisSecond;
+    private int sortsPerSecond;
+    private long secondStart;
+
+    public RenderQueue() {
+        buckets = new IntMap<Array<Entity>>();
+        depths = new IntArray();
+        dirty = true;
+        sortCount = 0;
+        sortsThisSecond = 0;
+        sortsPerSecond = 0;
+        secondStart = System.nanoTime();
+    }
+    
+    public void invalidate() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+    
+    /**
+     * Rebuilds the buckets from the given entities if the queue has been
+     * invalidated.
+     */
+    public void update(Array<Entity> entities) {
+        if (dirty) {
+            for (int i = 0; i < depths.size; i++) {
+                buckets.get(depths.get(i)).clear();
+            }
+            depths.clear();
+            
+            for (int i = 0; i < entities.size; i++) {
+                Entity entity = entities.get(i);
+                if (!entity.isDestroyed()) {
+                    Array<Entity> bucket = buckets.get(entity.getDepth());
+                    if (bucket == null) {
+                        bucket = new Array<Entity>();
+                        buckets.put(entity.getDepth(), bucket);
+                    }
+                    
+                    if (bucket.size == 0) {
+                        depths.add(entity.getDepth());
+                    }
+                    bucket.add(entity);
+                }
+            }
+            
+            depths.sort();
+            depths.reverse();
+            dirty = false;
+            sortCount++;
+            sortsThisSecond++;
+        }
+        
+        long time = System.nanoTime();
+        if (time - secondStart >= NANOS_PER_SECOND) {
+            sortsPerSecond = sortsThisSecond;
+            sortsThisSecond = 0;
+            secondStart = time;
+        }
+    }
+    
+    /**
+     * Drops destroyed entities from their buckets without reordering.
+     */
+    public void removeDestroyed() {
+        for (int i = 0; i < depths.size; i++) {
+            EntityManager.compact(buckets.get(depths.get(i)));
+        }
+    }
+    
+    public int getBucketCount() {
+        return depths.size;
+    }
+    
+    /**
+     * @param index the position of the bucket in drawing order.
+     */
+    public Array<Entity> getBucket(int index) {
+        return buckets.get(depths.get(index));
+    }
+    
+    public int getSortCount() {
+        return sortCount;
+    }
+
+    /**
+     * @return the number of rebuilds during the last full second.
+     */
+    public int getSortsPerSecond() {
+        return sortsPerSecond;
+    }
+}
@@ -29,4 +29,15 @@ import com.badlogic.gdx.graphics.Color;
 public class SaveShape {
     public Color color;
     public boolean[][] grid;
+
+    public SaveShape() {
+    }
+    
+    public SaveShape(SaveShape other) {
+        color = new Color(other.color);
+        grid = new boolean[other.grid.length][];
+        for (int x = 0; x < grid.length; x++) {
+            grid[x] = other.grid[x].clone();
+        }
+    }
 }
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.scenes.scene2d.Actor;
+import com.badlogic.gdx.scenes.scene2d.ui.ImageTextButton;
+import com.badlogic.gdx.scenes.scene2d.ui.ImageTextButton.ImageTextButtonStyle;
+import com.badlogic.gdx.scenes.scene2d.ui.Skin;
+import com.badlogic.gdx.scenes.scene2d.ui.WidgetGroup;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
+import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener.ChangeEvent;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pools;
+
+/**
+ * A list of the shapes in a {@link ShapeCatalog} with a thumbnail next to
+ * every name, meant to be placed in a ScrollPane. Only the rows inside the
+ * visible area have widgets; they are reused as the list scrolls, so the
+ * cost of the list does not grow with the size of the library.
+ * <p>
+ * Filtering matches against names held in memory. A ChangeEvent is fired
+ * when the selection changes.
+ */
+public class ShapeBrowser extends WidgetGroup {
+    private final Skin skin;
+    private final String styleName;
+    private final ShapeCatalog catalog;
+    private final ShapeThumbnails thumbnails;
+    private final float rowHeight;
+    private final Array<Row> rows;
+    private final IntArray filtered;
+    private final Array<String> lowerCaseNames;
+    private final Rectangle cullingArea;
+    private Array<String> names;
+    private int catalogVersion;
+    private String filter;
+    private String selected;
+    private boolean culled;
+    private int firstRow;
+    private int lastRow;
+
+    public ShapeBrowser(ShapeCatalog catalog, ShapeThumbnails thumbnails, Skin skin) {
+        this(catalog, thumbnails, skin, "default");
+    }
+    
+    public ShapeBrowser(ShapeCatalog catalog, ShapeThumbnails thumbnails, Skin skin, String styleName) {
+        this.catalog = catalog;
+        this.thumbnails = thumbnails;
+        this.skin = skin;
+        this.styleName = styleName;
+        rows = new Array<Row>();
+        filtered = new IntArray();
+        lowerCaseNames = new Array<String>();
+        cullingArea = new Rectangle();
+        filter = "";
+        
+        Row row = newRow();
+        rowHeight = Math.max(row.button.getPrefHeight(), ShapeThumbnails.SIZE);
+        
+        refreshNames();
+        if (filtered.size > 0) {
+            selected = names.get(filtered.first());
+        }
+    }
+    
+    private Row newRow() {
+        final Row row = new Row(new ImageTextButton("", new ImageTextButtonStyle(skin.get(styleName, ImageTextButtonStyle.class))));
+        row.button.setProgrammaticChangeEvents(false);
+        row.button.addListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeListener.ChangeEvent event, Actor actor) {
+                //listeners of the browser get its own event instead
+                event.stop();
+                setSelected(row.name);
+            }
+        });
+        row.button.setVisible(false);
+        rows.add(row);
+        addActor(row.button);
+        return row;
+    }
+
+    @Override
+    public void act(float delta) {
+        if (catalogVersion != catalog.getVersion()) {
+            refreshNames();
+        }
+        thumbnails.update();
+        super.act(delta);
+    }
+    
+    private void refreshNames() {
+        catalogVersion = catalog.getVersion();
+        names = catalog.getNames();
+        lowerCaseNames.clear();
+        for (String name : names) {
+            lowerCaseNames.add(name.toLowerCase());
+        }
+        applyFilter();
+    }
+    
+    /**
+     * Shows only the shapes whose names contain the text, ignoring case.
+     */
+    public void setFilter(String filter) {
+        this.filter = filter.toLowerCase();
+        applyFilter();
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+    
+    private void applyFilter() {
+        filtered.clear();
+        for (int i = 0; i < lowerCaseNames.size; i++) {
+            if (lowerCaseNames.get(i).contains(filter)) {
+                filtered.add(i);
+            }
+        }
+        invalidateHierarchy();
+        bindRows(true);
+    }
+
+    @Override
+    public void layout() {
+        bindRows(true);
+    }
+
+    @Override
+    public void setCullingArea(Rectangle cullingArea) {
+        super.setCullingArea(cullingArea);
+        if (cullingArea == null) {
+            culled = false;
+        } else {
+            culled = true;
+            this.cullingArea.set(cullingArea);
+        }
+        bindRows(false);
+    }
+    
+    /**
+     * Assigns the visible rows to row widgets. Widgets are only touched when
+     * the visible range changes unless {@code force} is set.
+     */
+    private void bindRows(boolean force) {
+        int first = 0;
+        int last = filtered.size - 1;
+        if (culled) {
+            first = Math.max(first, (int) ((getHeight() - cullingArea.y - cullingArea.height) / rowHeight));
+            last = Math.min(last, (int) ((getHeight() - cullingArea.y) / rowHeight));
+        }
+        if (!force && first == firstRow && last == lastRow) {
+            return;
+        }
+        firstRow = first;
+        lastRow = last;
+        
+        int count = Math.max(0, last - first + 1);
+        while (rows.size < count) {
+            newRow();
+        }
+        
+        for (int i = 0; i < rows.size; i++) {
+            Row row = rows.get(i);
+            if (i < count) {
+                int index = first + i;
+                row.name = names.get(filtered.get(index));
+                row.button.setText(row.name);
+                row.button.getStyle().imageUp = thumbnails.get(catalog.getSaveShape(row.name));
+                row.button.setChecked(row.name.equals(selected));
+                row.button.setBounds(0, getHeight() - (index + 1) * rowHeight, getWidth(), rowHeight);
+                row.button.setVisible(true);
+            } else {
+                row.name = null;
+                row.button.setVisible(false);
+            }
+        }
+    }
+
+    public String getSelected() {
+        return selected;
+    }
+
+    public void setSelected(String selected) {
+        if (selected == null ? this.selected == null : selected.equals(this.selected)) {
+            //keep the row checked when it is clicked again
+            bindRows(true);
+            return;
+        }
+        
+        this.selected = selected;
+        bindRows(true);
+        ChangeEvent changeEvent = Pools.obtain(ChangeEvent.class);
+        fire(changeEvent);
+        Pools.free(changeEvent);
+    }
+
+    @Override
+    public float getPrefWidth() {
+        return rows.first().button.getPrefWidth();
+    }
+
+    @Override
+    public float getPrefHeight() {
+        return filtered.size * rowHeight;
+    }
+    
+    public int getShownCount() {
+        return filtered.size;
+    }
+    
+    private static class Row {
+        private final ImageTextButton button;
+        private String name;
+
+        public Row(ImageTextButton button) {
+            this.button = button;
+        }
+    }
+}
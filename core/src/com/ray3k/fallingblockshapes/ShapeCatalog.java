@@ -0,0 +1,381 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ObjectSet;
+import com.badlogic.gdx.utils.StreamUtils;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * The shapes of a directory, indexed by name and kept in memory for every
+ * state to share. The directory is watched for changes, or rescanned every
+ * {@link #POLL_INTERVAL} seconds where file watching is not available, and
+ * only the files that changed are parsed again.
+ * <p>
+ * Whenever the set changes, {@link #getShapes()} and {@link #getNames()}
+ * return new arrays, so a game that is running keeps the shapes it started
+ * with. The binary {@link ShapePack} is rewritten so the next launch starts
+ * without parsing JSON. Files that cannot be parsed are reported and left
+ * out instead of stopping the game.
+ */
+public class ShapeCatalog implements Disposable {
+    public final static float POLL_INTERVAL = 1.0f;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+    private final FileHandle directory;
+    private final FileHandle packFile;
+    private final ObjectMap<String, Entry> entries;
+    private final Json json;
+    private final AsyncFileWriter writer;
+    private final ObjectSet<String> corruptNames;
+    private Array<String> names;
+    private Array<CompiledShape> shapes;
+    private WatchService watchService;
+    private boolean watchable;
+    private float pollTimer;
+    private boolean changed;
+    private int version;
+
+    /**
+     * @param writer writes saved shapes and the shape pack off the render
+     * thread.
+     */
+    public ShapeCatalog(FileHandle directory, FileHandle packFile, AsyncFileWriter writer) {
+        this.directory = directory;
+        this.packFile = packFile;
+        this.writer = writer;
+        entries = new ObjectMap<String, Entry>();
+        json = new Json();
+        corruptNames = new ObjectSet<String>();
+        
+        FileHandle[] files = ShapePack.listShapeFiles(directory);
+        ObjectMap<String, FileHandle> filesByName = new ObjectMap<String, FileHandle>(files.length);
+        for (FileHandle file : files) {
+            filesByName.put(file.nameWithoutExtension(), file);
+        }
+        
+        ShapePack pack = ShapePack.load(files, packFile);
+        for (int i = 0; i < pack.size(); i++) {
+            Entry entry = new Entry(pack.getName(i));
+            entry.lastModified = filesByName.get(entry.name).lastModified();
+            entry.saveShape = pack.getSaveShape(i);
+            entry.shape = pack.getShapes().get(i);
+            entries.put(entry.name, entry);
+        }
+        names = new Array<String>(pack.getNames());
+        shapes = new Array<CompiledShape>(pack.getShapes());
+        for (FileHandle file : pack.getSkippedFiles()) {
+            corruptNames.add(file.nameWithoutExtension());
+            reportCorrupt(file);
+        }
+        
+        watchable = true;
+        startWatching();
+    }
+    
+    private void startWatching() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directory.file().toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            stopWatching();
+        } catch (UnsupportedOperationException e) {
+            watchable = false;
+            stopWatching();
+        }
+    }
+    
+    private void stopWatching() {
+        StreamUtils.closeQuietly(watchService);
+        watchService = null;
+    }
+    
+    /**
+     * Applies the changes made to the directory since the last update. Call
+     * once per frame.
+     */
+    public void update(float delta) {
+        if (watchService != null) {
+            WatchKey key = watchService.poll();
+            while (key != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        rescan();
+                    } else {
+                        String fileName = ((Path) event.context()).toString();
+                        if (fileName.endsWith("." + ShapePack.EXTENSION)) {
+                            refresh(directory.child(fileName));
+                        }
+                    }
+                }
+                
+                //the directory itself is gone, fall back to polling until it is back
+                if (!key.reset()) {
+                    stopWatching();
+                    break;
+                }
+                key = watchService.poll();
+            }
+        } else {
+            pollTimer -= delta;
+            if (pollTimer <= 0) {
+                pollTimer = POLL_INTERVAL;
+                rescan();
+                if (watchable && directory.isDirectory()) {
+                    startWatching();
+                }
+            }
+        }
+        
+        if (changed) {
+            rebuild();
+        }
+    }
+    
+    /**
+     * Compares the directory against the catalog, parsing only files whose
+     * modification time changed.
+     */
+    private void rescan() {
+        ObjectSet<String> found = new ObjectSet<String>();
+        for (FileHandle file : directory.list("." + ShapePack.EXTENSION)) {
+            String name = file.nameWithoutExtension();
+            found.add(name);
+            Entry entry = entries.get(name);
+            if (entry == null || entry.lastModified != file.lastModified()) {
+                refresh(file);
+            }
+        }
+        
+        for (String name : names) {
+            Entry entry = entries.get(name);
+            if (entry != null && entry.pendingSaves == 0 && !found.contains(name)) {
+                entries.remove(name);
+                changed = true;
+            }
+        }
+        for (ObjectSet.ObjectSetIterator<String> iterator = corruptNames.iterator(); iterator.hasNext();) {
+            if (!found.contains(iterator.next())) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+    }
+    
+    /**
+     * Parses a single file again, or removes its entry if it was deleted.
+     * Files that cannot be parsed, for instance because another program is
+     * halfway through writing them, are reported and skipped; the write that
+     * completes them triggers another refresh.
+     */
+    private void refresh(FileHandle file) {
+        String name = file.nameWithoutExtension();
+        Entry entry = entries.get(name);
+        if (entry != null && entry.pendingSaves > 0) {
+            return;
+        }
+        
+        if (!file.exists()) {
+            if (corruptNames.remove(name)) {
+                changed = true;
+            }
+            if (entries.remove(name) != null) {
+                changed = true;
+            }
+            return;
+        }
+        
+        SaveShape saveShape = ShapePack.parse(json, file);
+        if (saveShape == null) {
+            if (corruptNames.add(name)) {
+                reportCorrupt(file);
+                changed = true;
+            }
+            return;
+        }
+        corruptNames.remove(name);
+        put(name, saveShape, file.lastModified());
+    }
+    
+    private void reportCorrupt(FileHandle file) {
+        Gdx.app.error(ShapeCatalog.class.getName(), "Skipping corrupt shape file: " + file.path());
+    }
+    
+    private void put(String name, SaveShape saveShape, long lastModified) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            entry = new Entry(name);
+            entries.put(name, entry);
+        } else if (Color.rgba8888(entry.saveShape.color) == Color.rgba8888(saveShape.color) && ShapePack.packGrid(entry.saveShape.grid) == ShapePack.packGrid(saveShape.grid)) {
+            entry.lastModified = lastModified;
+            return;
+        }
+        
+        entry.lastModified = lastModified;
+        entry.saveShape = saveShape;
+        entry.shape = new CompiledShape(saveShape);
+        changed = true;
+    }
+    
+    /**
+     * Adds a shape to the catalog right away, replacing any shape of the
+     * same name, and saves it to the directory in the background.
+     * @param listener notified on the render thread once the file is
+     * written, may be null.
+     */
+    public void save(final String name, SaveShape saveShape, final AsyncFileWriter.Listener listener) {
+        put(name, new SaveShape(saveShape), 0);
+        if (changed) {
+            rebuild();
+        }
+        
+        final Entry entry = entries.get(name);
+        entry.pendingSaves++;
+        FileHandle file = directory.child(name + "." + ShapePack.EXTENSION);
+        writer.write(file, json.toJson(saveShape).getBytes(UTF_8), new AsyncFileWriter.Listener() {
+            @Override
+            public void written(FileHandle file) {
+                entry.pendingSaves--;
+                entry.lastModified = file.lastModified();
+                if (listener != null) {
+                    listener.written(file);
+                }
+            }
+
+            @Override
+            public void failed(FileHandle file, Exception exception) {
+                //the catalog is ahead of the disk, go back to what the file holds
+                entry.pendingSaves--;
+                refresh(file);
+                if (listener != null) {
+                    listener.failed(file, exception);
+                }
+            }
+        });
+    }
+    
+    private void rebuild() {
+        changed = false;
+        version++;
+        
+        Array<String> sortedNames = new Array<String>(entries.size);
+        for (String name : entries.keys()) {
+            sortedNames.add(name);
+        }
+        sortedNames.sort();
+        
+        Array<CompiledShape> sortedShapes = new Array<CompiledShape>(sortedNames.size);
+        ShapePack pack = new ShapePack(sortedNames.size);
+        for (String name : sortedNames) {
+            Entry entry = entries.get(name);
+            sortedShapes.add(entry.shape);
+            pack.add(name, entry.saveShape, entry.shape);
+        }
+        Array<String> sortedCorruptNames = new Array<String>(corruptNames.size);
+        for (String name : corruptNames) {
+            sortedCorruptNames.add(name);
+        }
+        sortedCorruptNames.sort();
+        for (String name : sortedCorruptNames) {
+            pack.addSkipped(name);
+        }
+        names = sortedNames;
+        shapes = sortedShapes;
+        writer.write(packFile, pack.toByteArray(), null);
+    }
+
+    /**
+     * @return the shapes in name order. The array is replaced instead of
+     * modified when the catalog changes and must not be modified.
+     */
+    public Array<CompiledShape> getShapes() {
+        return shapes;
+    }
+
+    /**
+     * @return the shape names in the same order as {@link #getShapes()}.
+     */
+    public Array<String> getNames() {
+        return names;
+    }
+    
+    /**
+     * @return the shape as the editor saved it or null if there is no such
+     * shape. The instance is shared and must not be modified.
+     */
+    public SaveShape getSaveShape(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.saveShape;
+    }
+    
+    public CompiledShape getShape(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.shape;
+    }
+    
+    public int size() {
+        return entries.size;
+    }
+
+    /**
+     * @return a number that increases every time the set of shapes changes.
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    @Override
+    public void dispose() {
+        stopWatching();
+    }
+    
+    private static class Entry {
+        private final String name;
+        private long lastModified;
+        private SaveShape saveShape;
+        private CompiledShape shape;
+        private int pendingSaves;
+
+        public Entry(String name) {
+            this.name = name;
+        }
+    }
+}
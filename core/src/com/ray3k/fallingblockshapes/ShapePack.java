@@ -0,0 +1,411 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.SerializationException;
+import com.badlogic.gdx.utils.StreamUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A set of {@link CompiledShape}s in a compact binary form, so a game can
+ * start without parsing the JSON of every {@code .shape} file.
+ * <p>
+ * The file format is the magic number, the version and the shape count,
+ * followed by every shape as its name in modified UTF-8, its color as
+ * RGBA8888, its editor grid as a 16 bit mask and the 16 bit masks of all
+ * four rotations. Shapes are stored in name order. They are followed by
+ * the count and the names of the files that could not be parsed, so a
+ * known corrupt file does not invalidate the pack.
+ */
+public class ShapePack {
+    public final static int MAGIC = 0x46425350;
+    public final static int VERSION = 2;
+    public final static String EXTENSION = "shape";
+    /**
+     * Packs at least this large are memory mapped instead of read into the
+     * heap.
+     */
+    public final static long MAP_THRESHOLD = 64 * 1024;
+    private final Array<String> names;
+    private final Array<CompiledShape> shapes;
+    private final Array<SaveShape> saveShapes;
+    private final Array<FileHandle> skippedFiles;
+    private final Array<String> skippedNames;
+
+    public ShapePack() {
+        this(16);
+    }
+    
+    public ShapePack(int capacity) {
+        names = new Array<String>(capacity);
+        shapes = new Array<CompiledShape>(capacity);
+        saveShapes = new Array<SaveShape>(capacity);
+        skippedFiles = new Array<FileHandle>();
+        skippedNames = new Array<String>();
+    }
+    
+    /**
+     * Returns the pack file if it is newer than every shape in the
+     * directory, otherwise rebuilds it from the JSON files and saves it.
+     */
+    public static ShapePack load(FileHandle directory, FileHandle packFile) {
+        return load(listShapeFiles(directory), packFile);
+    }
+    
+    /**
+     * @param files the shape files as returned by
+     * {@link #listShapeFiles(FileHandle)}.
+     */
+    public static ShapePack load(FileHandle[] files, FileHandle packFile) {
+        if (packFile.exists()) {
+            boolean current = true;
+            for (FileHandle file : files) {
+                if (file.lastModified() > packFile.lastModified()) {
+                    current = false;
+                    break;
+                }
+            }
+            
+            if (current) {
+                try {
+                    ShapePack pack = read(packFile);
+                    if (pack.matches(files)) {
+                        return pack;
+                    }
+                } catch (GdxRuntimeException e) {
+                    Gdx.app.error(ShapePack.class.getName(), "Error reading shape pack, rebuilding " + packFile.path() + ".", e);
+                }
+            }
+        }
+        
+        ShapePack pack = build(files);
+        pack.write(packFile);
+        return pack;
+    }
+    
+    /**
+     * Parses every {@code .shape} file of a directory.
+     */
+    public static ShapePack build(FileHandle directory) {
+        return build(listShapeFiles(directory));
+    }
+    
+    /**
+     * Checks that the pack holds exactly the given files, either as a shape
+     * or as a skipped file, and resolves the skipped names to the files.
+     */
+    private boolean matches(FileHandle[] files) {
+        if (files.length != names.size + skippedNames.size) {
+            return false;
+        }
+        
+        Array<FileHandle> skipped = new Array<FileHandle>(skippedNames.size);
+        int shape = 0;
+        int skip = 0;
+        for (FileHandle file : files) {
+            String name = file.nameWithoutExtension();
+            if (shape < names.size && names.get(shape).equals(name)) {
+                shape++;
+            } else if (skip < skippedNames.size && skippedNames.get(skip).equals(name)) {
+                skipped.add(file);
+                skip++;
+            } else {
+                return false;
+            }
+        }
+        skippedFiles.clear();
+        skippedFiles.addAll(skipped);
+        return true;
+    }
+    
+    private static ShapePack build(FileHandle[] files) {
+        ShapePack pack = new ShapePack(files.length);
+        Json json = new Json();
+        for (FileHandle file : files) {
+            SaveShape saveShape = parse(json, file);
+            if (saveShape != null) {
+                pack.add(file.nameWithoutExtension(), saveShape);
+            } else {
+                pack.skippedFiles.add(file);
+                pack.skippedNames.add(file.nameWithoutExtension());
+            }
+        }
+        return pack;
+    }
+    
+    /**
+     * @return the shape in the file or null if the file is not a valid
+     * shape, for instance because it was only partially written.
+     */
+    public static SaveShape parse(Json json, FileHandle file) {
+        SaveShape saveShape;
+        try {
+            saveShape = json.fromJson(SaveShape.class, file);
+        } catch (SerializationException e) {
+            return null;
+        } catch (GdxRuntimeException e) {
+            return null;
+        }
+        
+        if (saveShape == null || saveShape.color == null || saveShape.grid == null || saveShape.grid.length != CompiledShape.SIZE) {
+            return null;
+        }
+        for (boolean[] column : saveShape.grid) {
+            if (column == null || column.length != CompiledShape.SIZE) {
+                return null;
+            }
+        }
+        return saveShape;
+    }
+    
+    /**
+     * @return the shape files of a directory sorted by name, so that a seed
+     * picks the same shapes on every file system.
+     */
+    public static FileHandle[] listShapeFiles(FileHandle directory) {
+        FileHandle[] files = directory.list("." + EXTENSION);
+        Arrays.sort(files, new Comparator<FileHandle>() {
+            @Override
+            public int compare(FileHandle o1, FileHandle o2) {
+                return o1.nameWithoutExtension().compareTo(o2.nameWithoutExtension());
+            }
+        });
+        return files;
+    }
+    
+    private void add(String name, SaveShape saveShape) {
+        add(name, saveShape, new CompiledShape(saveShape));
+    }
+    
+    /**
+     * Appends a shape. Shapes must be added in name order.
+     */
+    public void add(String name, SaveShape saveShape, CompiledShape shape) {
+        names.add(name);
+        shapes.add(shape);
+        saveShapes.add(saveShape);
+    }
+    
+    /**
+     * Records a shape file that could not be parsed. Skipped files must be
+     * added in name order.
+     */
+    public void addSkipped(String name) {
+        skippedNames.add(name);
+    }
+    
+    public void write(FileHandle file) {
+        file.writeBytes(toByteArray(), false);
+    }
+    
+    /**
+     * @return the pack in the file format, for writers that take the whole
+     * contents at once such as {@link AsyncFileWriter}.
+     */
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(9 + shapes.size * 32);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeInt(shapes.size);
+            for (int i = 0; i < shapes.size; i++) {
+                CompiledShape shape = shapes.get(i);
+                output.writeUTF(names.get(i));
+                output.writeInt(Color.rgba8888(shape.getColor()));
+                output.writeShort(packGrid(saveShapes.get(i).grid));
+                for (int rotation = 0; rotation < CompiledShape.ROTATIONS; rotation++) {
+                    output.writeShort(shape.getPackedMask(rotation));
+                }
+            }
+            output.writeInt(skippedNames.size);
+            for (String name : skippedNames) {
+                output.writeUTF(name);
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error encoding shape pack.", e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static ShapePack read(FileHandle file) {
+        RandomAccessFile randomAccessFile = null;
+        try {
+            ByteBuffer buffer;
+            if (file.length() >= MAP_THRESHOLD) {
+                randomAccessFile = new RandomAccessFile(file.file(), "r");
+                FileChannel channel = randomAccessFile.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                buffer = ByteBuffer.wrap(file.readBytes());
+            }
+            return read(buffer, file);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading shape pack: " + file.path(), e);
+        } catch (BufferUnderflowException e) {
+            throw new GdxRuntimeException("Shape pack is truncated: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(randomAccessFile);
+        }
+    }
+    
+    private static ShapePack read(ByteBuffer buffer, FileHandle file) {
+        if (buffer.getInt() != MAGIC) {
+            throw new GdxRuntimeException("Not a shape pack: " + file.path());
+        }
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported shape pack version " + version + ": " + file.path());
+        }
+        
+        int count = buffer.getInt();
+        if (count < 0) {
+            throw new GdxRuntimeException("Shape pack is corrupt: " + file.path());
+        }
+        ShapePack pack = new ShapePack(count);
+        short[] rotationMasks = new short[CompiledShape.ROTATIONS];
+        for (int i = 0; i < count; i++) {
+            String name = readUTF(buffer);
+            Color color = new Color(buffer.getInt());
+            SaveShape saveShape = new SaveShape();
+            saveShape.color = color;
+            saveShape.grid = unpackGrid(buffer.getShort());
+            for (int rotation = 0; rotation < CompiledShape.ROTATIONS; rotation++) {
+                rotationMasks[rotation] = buffer.getShort();
+            }
+            
+            pack.add(name, saveShape, new CompiledShape(color, rotationMasks));
+        }
+        
+        int skippedCount = buffer.getInt();
+        if (skippedCount < 0) {
+            throw new GdxRuntimeException("Shape pack is corrupt: " + file.path());
+        }
+        for (int i = 0; i < skippedCount; i++) {
+            pack.skippedNames.add(readUTF(buffer));
+        }
+        return pack;
+    }
+    
+    /**
+     * Reads a string written by {@link DataOutputStream#writeUTF(String)}.
+     * Shape names are file names, so the two and three byte forms are all
+     * that can occur.
+     */
+    private static String readUTF(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xffff;
+        char[] chars = new char[length];
+        int count = 0;
+        int end = buffer.position() + length;
+        while (buffer.position() < end) {
+            int c = buffer.get() & 0xff;
+            if (c < 0x80) {
+                chars[count++] = (char) c;
+            } else if ((c & 0xe0) == 0xc0) {
+                chars[count++] = (char) (((c & 0x1f) << 6) | (buffer.get() & 0x3f));
+            } else {
+                chars[count++] = (char) (((c & 0x0f) << 12) | ((buffer.get() & 0x3f) << 6) | (buffer.get() & 0x3f));
+            }
+        }
+        return new String(chars, 0, count);
+    }
+    
+    /**
+     * @return the editor grid as one bit per cell, {@code x + y * 4}.
+     */
+    public static short packGrid(boolean[][] grid) {
+        int mask = 0;
+        for (int x = 0; x < CompiledShape.SIZE; x++) {
+            for (int y = 0; y < CompiledShape.SIZE; y++) {
+                if (grid[x][y]) {
+                    mask |= 1 << (x + y * CompiledShape.SIZE);
+                }
+            }
+        }
+        return (short) mask;
+    }
+    
+    public static boolean[][] unpackGrid(short mask) {
+        boolean[][] grid = new boolean[CompiledShape.SIZE][CompiledShape.SIZE];
+        for (int x = 0; x < CompiledShape.SIZE; x++) {
+            for (int y = 0; y < CompiledShape.SIZE; y++) {
+                grid[x][y] = (mask & (1 << (x + y * CompiledShape.SIZE))) != 0;
+            }
+        }
+        return grid;
+    }
+    
+    public int size() {
+        return shapes.size;
+    }
+
+    /**
+     * @return the shapes in name order. The array is shared and must not be
+     * modified.
+     */
+    public Array<CompiledShape> getShapes() {
+        return shapes;
+    }
+
+    /**
+     * @return the names of the files that could not be parsed, also when the
+     * pack was read from a file.
+     */
+    public Array<String> getSkippedNames() {
+        return skippedNames;
+    }
+    
+    public Array<FileHandle> getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public Array<String> getNames() {
+        return names;
+    }
+    
+    public String getName(int index) {
+        return names.get(index);
+    }
+    
+    /**
+     * @return the shape as the editor saves it.
+     */
+    public SaveShape getSaveShape(int index) {
+        return saveShapes.get(index);
+    }
+}
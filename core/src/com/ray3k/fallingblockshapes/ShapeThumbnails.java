@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * Small pictures of shapes, drawn once into the shared
+ * {@link PixmapPacker} and added to the game's atlas. Thumbnails are keyed
+ * by the colour and grid of the shape rather than by name, so identical
+ * shapes share one region and renaming a file costs nothing.
+ * <p>
+ * Newly requested thumbnails are uploaded to the atlas together on the next
+ * {@link #update()}; until then their drawables draw nothing.
+ */
+public class ShapeThumbnails {
+    public final static int CELL_SIZE = 8;
+    public final static int SIZE = CompiledShape.SIZE * CELL_SIZE;
+    private final PixmapPacker packer;
+    private final TextureAtlas atlas;
+    private final LongMap<TextureRegionDrawable> drawables;
+    private final Array<String> pendingNames;
+    private final Array<TextureRegionDrawable> pendingDrawables;
+
+    public ShapeThumbnails(PixmapPacker packer, TextureAtlas atlas) {
+        this.packer = packer;
+        this.atlas = atlas;
+        drawables = new LongMap<TextureRegionDrawable>();
+        pendingNames = new Array<String>();
+        pendingDrawables = new Array<TextureRegionDrawable>();
+    }
+    
+    /**
+     * @return the thumbnail of the shape. The same drawable is returned for
+     * every shape with the same colour and grid.
+     */
+    public TextureRegionDrawable get(SaveShape saveShape) {
+        long key = (long) Color.rgba8888(saveShape.color) << 16 | (ShapePack.packGrid(saveShape.grid) & 0xffff);
+        TextureRegionDrawable drawable = drawables.get(key);
+        if (drawable == null) {
+            drawable = new Thumbnail();
+            drawable.setMinWidth(SIZE);
+            drawable.setMinHeight(SIZE);
+            drawables.put(key, drawable);
+            
+            String name = "shape-thumbnail-" + Long.toHexString(key);
+            if (packer.getRect(name) == null) {
+                Pixmap pixmap = rasterize(saveShape);
+                packer.pack(name, pixmap);
+                pixmap.dispose();
+            }
+            pendingNames.add(name);
+            pendingDrawables.add(drawable);
+        }
+        return drawable;
+    }
+    
+    private static Pixmap rasterize(SaveShape saveShape) {
+        Pixmap pixmap = new Pixmap(SIZE, SIZE, Pixmap.Format.RGBA8888);
+        pixmap.setColor(saveShape.color);
+        for (int x = 0; x < CompiledShape.SIZE; x++) {
+            for (int y = 0; y < CompiledShape.SIZE; y++) {
+                if (saveShape.grid[x][y]) {
+                    pixmap.fillRectangle(x * CELL_SIZE + 1, y * CELL_SIZE + 1, CELL_SIZE - 2, CELL_SIZE - 2);
+                }
+            }
+        }
+        return pixmap;
+    }
+    
+    /**
+     * Uploads the thumbnails packed since the last update in one go. Call
+     * once per frame while thumbnails are shown.
+     */
+    public void update() {
+        if (pendingNames.size > 0) {
+            packer.updateTextureAtlas(atlas, Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
+            for (int i = 0; i < pendingNames.size; i++) {
+                pendingDrawables.get(i).setRegion(atlas.findRegion(pendingNames.get(i)));
+            }
+            pendingNames.clear();
+            pendingDrawables.clear();
+        }
+    }
+    
+    private static class Thumbnail extends TextureRegionDrawable {
+        @Override
+        public void draw(Batch batch, float x, float y, float width, float height) {
+            if (getRegion() != null) {
+                super.draw(batch, x, y, width, height);
+            }
+        }
+    }
+}
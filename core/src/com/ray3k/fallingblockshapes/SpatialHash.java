@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.LongMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Uniform grid of collision boxes used by {@link EntityManager} to find
+ * candidate collision pairs. Entities are stored in every cell their
+ * collision box touches and are only moved when that range of cells changes.
+ */
+public class SpatialHash {
+    private final float cellSize;
+    private final LongMap<Array<Entity>> cells;
+    private final ObjectMap<Entity, CellRange> ranges;
+    private final Pool<CellRange> rangePool;
+    private int queryStamp;
+
+    public SpatialHash(float cellSize) {
+        this.cellSize = cellSize;
+        cells = new LongMap<Array<Entity>>();
+        ranges = new ObjectMap<Entity, CellRange>();
+        rangePool = new Pool<CellRange>() {
+            @Override
+            protected CellRange newObject() {
+                return new CellRange();
+            }
+        };
+        queryStamp = 0;
+    }
+    
+    public void update(Entity entity) {
+        Rectangle box = entity.getCollisionBox();
+        int minX = MathUtils.floor(box.x / cellSize);
+        int minY = MathUtils.floor(box.y / cellSize);
+        int maxX = MathUtils.floor((box.x + box.width) / cellSize);
+        int maxY = MathUtils.floor((box.y + box.height) / cellSize);
+        
+        CellRange range = ranges.get(entity);
+        if (range != null) {
+            if (minX == range.minX && minY == range.minY && maxX == range.maxX && maxY == range.maxY) {
+                return;
+            }
+            removeFromCells(entity, range);
+        } else {
+            range = rangePool.obtain();
+            ranges.put(entity, range);
+        }
+        
+        range.minX = minX;
+        range.minY = minY;
+        range.maxX = maxX;
+        range.maxY = maxY;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                long key = key(x, y);
+                Array<Entity> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new Array<Entity>(false, 4);
+                    cells.put(key, cell);
+                }
+                cell.add(entity);
+            }
+        }
+    }
+    
+    public void remove(Entity entity) {
+        CellRange range = ranges.remove(entity);
+        if (range != null) {
+            removeFromCells(entity, range);
+            rangePool.free(range);
+        }
+    }
+    
+    private void removeFromCells(Entity entity, CellRange range) {
+        for (int x = range.minX; x <= range.maxX; x++) {
+            for (int y = range.minY; y <= range.maxY; y++) {
+                Array<Entity> cell = cells.get(key(x, y));
+                if (cell != null) {
+                    cell.removeValue(entity, true);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Calls {@link Entity#collision(Entity)} on the given entity for every
+     * other hashed entity whose layer it accepts and whose collision box
+     * overlaps its own. Each pair is reported at most once per call.
+     */
+    public void dispatchCollisions(Entity entity) {
+        CellRange range = ranges.get(entity);
+        if (range == null) {
+            return;
+        }
+        
+        queryStamp++;
+        for (int x = range.minX; x <= range.maxX; x++) {
+            for (int y = range.minY; y <= range.maxY; y++) {
+                Array<Entity> cell = cells.get(key(x, y));
+                if (cell != null) {
+                    for (int i = 0; i < cell.size; i++) {
+                        if (entity.isDestroyed() || !entity.isCheckingCollisions()) {
+                            return;
+                        }
+                        
+                        Entity other = cell.get(i);
+                        if (other != entity) {
+                            CellRange otherRange = ranges.get(other);
+                            if (otherRange.stamp != queryStamp) {
+                                otherRange.stamp = queryStamp;
+                                if (entity.canCollideWith(other) && entity.getCollisionBox().overlaps(other.getCollisionBox())) {
+                                    entity.collision(other);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    public void clear() {
+        for (CellRange range : ranges.values()) {
+            rangePool.free(range);
+        }
+        ranges.clear();
+        cells.clear();
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+    
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+    
+    /**
+     * The cells an entity is stored in, and the query that last reported it.
+     */
+    private static class CellRange {
+        private int minX;
+        private int minY;
+        private int maxX;
+        private int maxY;
+        private int stamp;
+    }
+}
@@ -30,6 +30,10 @@ public abstract class State {
     private Core core;
     
     public abstract void start();
+    /**
+     * @param delta the fraction of a fixed step that has passed since the
+     * last call to {@link #act(float)}, between 0 and 1.
+     */
     public abstract void draw(SpriteBatch spriteBatch, float delta);
     public abstract void act(float delta);
     public abstract void stop();
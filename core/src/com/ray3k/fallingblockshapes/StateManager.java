@@ -90,6 +90,10 @@ public class StateManager {
     public State getState(String name) {
         return states.get(name);
     }
+    
+    public State getLoadedState() {
+        return loadedState;
+    }
 
     public void resize(int width, int height) {
         if (loadedState != null) {
@@ -24,49 +24,74 @@
 
 package com.ray3k.fallingblockshapes.entities;
 
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.esotericsoftware.spine.AnimationState;
 import com.esotericsoftware.spine.AnimationStateData;
 import com.esotericsoftware.spine.Skeleton;
 import com.esotericsoftware.spine.SkeletonBounds;
 import com.esotericsoftware.spine.SkeletonData;
-import com.ray3k.fallingblockshapes.Core;
 import com.ray3k.fallingblockshapes.Entity;
-import com.ray3k.fallingblockshapes.states.GameState;
 
 public class BlockEntity extends Entity {
     private Skeleton skeleton;
+    private Skeleton ownSkeleton;
     private AnimationState animationState;
     private SkeletonBounds skeletonBounds;
-    private GameState gameState;
+    private PlayfieldEntities playfieldEntities;
     private Entity parent;
+    private boolean instanced;
+    private final Color color;
     
-    public BlockEntity(GameState gameState, Entity parent) {
-        super(gameState.getEntityManager(), gameState.getCore());
-        this.gameState = gameState;
+    public BlockEntity(PlayfieldEntities playfieldEntities) {
+        super(playfieldEntities.getCore());
+        this.playfieldEntities = playfieldEntities;
+        color = new Color();
+    }
+    
+    public void init(Entity parent, Color color) {
         this.parent = parent;
-        SkeletonData skeletonData = getCore().getAssetManager().get(Core.DATA_PATH + "/spine/tetromino.json", SkeletonData.class);
-        skeleton = new Skeleton(skeletonData);
-        AnimationStateData animationStateData = new AnimationStateData(skeletonData);
-        animationStateData.setDefaultMix(.25f);
-        animationState = new AnimationState(animationStateData);
-        animationState.setAnimation(0, "animation", true);
+        this.color.set(color);
+        instanced = playfieldEntities.isBlockInstancing();
         
-        skeletonBounds = new SkeletonBounds();
-        skeletonBounds.update(skeleton, true);
+        if (instanced) {
+            skeleton = playfieldEntities.getBlockSkeletons().obtain(color);
+        } else {
+            if (ownSkeleton == null) {
+                SkeletonData skeletonData = playfieldEntities.getBlockSkeletons().getSkeletonData();
+                ownSkeleton = new Skeleton(skeletonData);
+                AnimationStateData animationStateData = new AnimationStateData(skeletonData);
+                animationStateData.setDefaultMix(.25f);
+                animationState = new AnimationState(animationStateData);
+            }
+            
+            skeleton = ownSkeleton;
+            skeleton.setToSetupPose();
+            skeleton.getSlots().get(playfieldEntities.getBlockSkeletons().getSlotIndex()).getColor().set(color);
+            animationState.setAnimation(0, "animation", true);
+        }
     }
 
     @Override
     public void create() {
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        parent = null;
+        skeleton = null;
+        if (animationState != null) {
+            animationState.clearTracks();
+        }
+    }
+
     @Override
     public void act(float delta) {
-        skeleton.setPosition(getX(), getY());
-        animationState.update(delta);
-        skeleton.updateWorldTransform();
-        animationState.apply(skeleton);
-        skeletonBounds.update(skeleton, true);
+        if (!instanced) {
+            animationState.update(delta);
+            animationState.apply(skeleton);
+        }
     }
 
     @Override
@@ -76,7 +101,13 @@ public class BlockEntity extends Entity {
 
     @Override
     public void draw(SpriteBatch spriteBatch, float delta) {
-        getCore().getSkeletonRenderer().draw(spriteBatch, skeleton);
+        if (instanced) {
+            playfieldEntities.getBlockSkeletons().setPosition(skeleton, getInterpolatedX(delta), getInterpolatedY(delta));
+        } else {
+            skeleton.setPosition(getInterpolatedX(delta), getInterpolatedY(delta));
+            skeleton.updateWorldTransform();
+        }
+        playfieldEntities.getSkeletonRenderer().draw(spriteBatch, skeleton);
     }
 
     @Override
@@ -87,14 +118,38 @@ public class BlockEntity extends Entity {
     public void collision(Entity other) {
     }
     
+    /**
+     * Computes the bounds of the block at its current position. Bounds are
+     * not kept up to date while the block moves, so the result is only valid
+     * until the next call.
+     */
     public SkeletonBounds getSkeletonBounds() {
+        if (skeletonBounds == null) {
+            skeletonBounds = new SkeletonBounds();
+        }
+        
+        skeleton.setPosition(getX(), getY());
+        skeleton.updateWorldTransform();
+        skeletonBounds.update(skeleton, true);
         return skeletonBounds;
     }
 
+    /**
+     * @return the skeleton used to draw this block. Instanced blocks share
+     * their skeleton with every other block of the same colour.
+     */
     public Skeleton getSkeleton() {
         return skeleton;
     }
 
+    public boolean isInstanced() {
+        return instanced;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
     public Entity getParent() {
         return parent;
     }
@@ -0,0 +1,119 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.entities;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntMap;
+import com.esotericsoftware.spine.AnimationState;
+import com.esotericsoftware.spine.AnimationStateData;
+import com.esotericsoftware.spine.Bone;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+
+/**
+ * One animated block skeleton per colour, shared by every instanced
+ * {@link BlockEntity} of that colour. Animations and world transforms are
+ * evaluated once per tick in {@link #update(float)} and each block only
+ * moves the posed skeleton to its position with
+ * {@link #setPosition(Skeleton, float, float)} before drawing it.
+ */
+public class BlockSkeletonCache {
+    private final SkeletonData skeletonData;
+    private final int slotIndex;
+    private final IntMap<Skeleton> skeletons;
+    private final Array<Skeleton> skeletonList;
+    private final Array<AnimationState> animationStates;
+
+    public BlockSkeletonCache(SkeletonData skeletonData) {
+        this.skeletonData = skeletonData;
+        slotIndex = skeletonData.findSlot("tetromino").getIndex();
+        skeletons = new IntMap<Skeleton>();
+        skeletonList = new Array<Skeleton>();
+        animationStates = new Array<AnimationState>();
+    }
+    
+    public Skeleton obtain(Color color) {
+        int key = Color.rgba8888(color);
+        Skeleton skeleton = skeletons.get(key);
+        if (skeleton == null) {
+            skeleton = new Skeleton(skeletonData);
+            skeleton.getSlots().get(slotIndex).getColor().set(color);
+            
+            AnimationStateData animationStateData = new AnimationStateData(skeletonData);
+            animationStateData.setDefaultMix(.25f);
+            AnimationState animationState = new AnimationState(animationStateData);
+            animationState.setAnimation(0, "animation", true);
+            animationState.apply(skeleton);
+            skeleton.updateWorldTransform();
+            
+            skeletons.put(key, skeleton);
+            skeletonList.add(skeleton);
+            animationStates.add(animationState);
+        }
+        return skeleton;
+    }
+    
+    public void update(float delta) {
+        for (int i = 0; i < skeletonList.size; i++) {
+            AnimationState animationState = animationStates.get(i);
+            animationState.update(delta);
+            Skeleton skeleton = skeletonList.get(i);
+            animationState.apply(skeleton);
+            skeleton.updateWorldTransform();
+        }
+    }
+    
+    /**
+     * Moves a skeleton posed by {@link #update(float)} by offsetting the world
+     * position of its bones, which gives the same result as updating its
+     * world transform at the new position.
+     */
+    public void setPosition(Skeleton skeleton, float x, float y) {
+        float deltaX = x - skeleton.getX();
+        float deltaY = y - skeleton.getY();
+        if (deltaX != 0 || deltaY != 0) {
+            Array<Bone> bones = skeleton.getBones();
+            for (int i = 0; i < bones.size; i++) {
+                Bone bone = bones.get(i);
+                bone.setWorldX(bone.getWorldX() + deltaX);
+                bone.setWorldY(bone.getWorldY() + deltaY);
+            }
+            skeleton.setPosition(x, y);
+        }
+    }
+    
+    public SkeletonData getSkeletonData() {
+        return skeletonData;
+    }
+    
+    public int getSlotIndex() {
+        return slotIndex;
+    }
+    
+    public int size() {
+        return skeletonList.size;
+    }
+}
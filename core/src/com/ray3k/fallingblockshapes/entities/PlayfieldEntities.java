@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.entities;
+
+import com.badlogic.gdx.graphics.Color;
+import com.esotericsoftware.spine.SkeletonRenderer;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.Entity;
+import com.ray3k.fallingblockshapes.EntityManager;
+import com.ray3k.fallingblockshapes.EntityPool;
+import com.ray3k.fallingblockshapes.Playfield;
+import com.ray3k.fallingblockshapes.simulation.Simulation;
+import com.ray3k.fallingblockshapes.simulation.SimulationAdapter;
+
+/**
+ * Mirrors a {@link Simulation} with pooled entities: the active piece as a
+ * {@link TetrominoEntity} and every locked cell as a {@link BlockEntity}.
+ * Register it as a listener of the simulation after {@link #start}. The
+ * pools are kept across games.
+ */
+public class PlayfieldEntities extends SimulationAdapter {
+    private final Core core;
+    private final SkeletonRenderer skeletonRenderer;
+    private final EntityPool<BlockEntity> blockPool;
+    private final EntityPool<TetrominoEntity> tetrominoPool;
+    private EntityManager entityManager;
+    private BlockSkeletonCache blockSkeletons;
+    private Simulation simulation;
+    private TetrominoEntity activePiece;
+    private BlockEntity[][] lockedBlocks;
+    private boolean blockInstancing;
+
+    /**
+     * @param core handed to the entities, may be null outside of the game.
+     */
+    public PlayfieldEntities(Core core, SkeletonRenderer skeletonRenderer) {
+        this.core = core;
+        this.skeletonRenderer = skeletonRenderer;
+        blockInstancing = true;
+        
+        blockPool = new EntityPool<BlockEntity>(64, Playfield.DEFAULT_WIDTH * Playfield.DEFAULT_HEIGHT + 16) {
+            @Override
+            protected BlockEntity newObject() {
+                return new BlockEntity(PlayfieldEntities.this);
+            }
+        };
+        
+        tetrominoPool = new EntityPool<TetrominoEntity>(2, 4) {
+            @Override
+            protected TetrominoEntity newObject() {
+                return new TetrominoEntity(PlayfieldEntities.this);
+            }
+        };
+    }
+    
+    /**
+     * Prepares for a new game. Entities of the previous game must have been
+     * disposed, for instance with {@link EntityManager#clear()}.
+     */
+    public void start(Simulation simulation, EntityManager entityManager, BlockSkeletonCache blockSkeletons) {
+        this.simulation = simulation;
+        this.entityManager = entityManager;
+        this.blockSkeletons = blockSkeletons;
+        activePiece = null;
+        int width = simulation.getPlayfield().getWidth();
+        int height = simulation.getPlayfield().getHeight();
+        if (lockedBlocks == null || lockedBlocks.length != height || lockedBlocks[0].length != width) {
+            lockedBlocks = new BlockEntity[height][width];
+        } else {
+            for (BlockEntity[] row : lockedBlocks) {
+                for (int x = 0; x < row.length; x++) {
+                    row[x] = null;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Disposes the active piece and every locked block while the entity
+     * manager stays in use, for instance to restart a game in place.
+     */
+    public void clear() {
+        if (activePiece != null) {
+            activePiece.dispose();
+            activePiece = null;
+        }
+        for (BlockEntity[] row : lockedBlocks) {
+            for (int x = 0; x < row.length; x++) {
+                if (row[x] != null) {
+                    row[x].dispose();
+                    row[x] = null;
+                }
+            }
+        }
+    }
+    
+    public BlockEntity obtainBlock(Entity parent, Color color) {
+        BlockEntity block = entityManager.obtain(blockPool);
+        block.init(parent, color);
+        return block;
+    }
+    
+    private void compactLockedBlocks(int[] rows, int count) {
+        int top = Math.min(simulation.getPlayfield().getStackHeight() + count, lockedBlocks.length);
+        int write = rows[0];
+        int next = 0;
+        for (int read = write; read < top; read++) {
+            BlockEntity[] row = lockedBlocks[read];
+            if (next < count && rows[next] == read) {
+                next++;
+                for (int x = 0; x < row.length; x++) {
+                    if (row[x] != null) {
+                        row[x].dispose();
+                        row[x] = null;
+                    }
+                }
+            } else {
+                for (BlockEntity block : row) {
+                    if (block != null) {
+                        block.addY(-(read - write) * TetrominoEntity.BLOCK_SIZE);
+                    }
+                }
+                lockedBlocks[read] = lockedBlocks[write];
+                lockedBlocks[write] = row;
+                write++;
+            }
+        }
+    }
+
+    @Override
+    public void pieceSpawned(Simulation simulation) {
+        activePiece = entityManager.obtain(tetrominoPool);
+        activePiece.init(simulation);
+    }
+
+    @Override
+    public void pieceMoved(Simulation simulation) {
+        activePiece.updateBlockPositions();
+    }
+
+    @Override
+    public void pieceLocked(Simulation simulation) {
+        activePiece.lockBlocks(lockedBlocks);
+        activePiece.dispose();
+        activePiece = null;
+    }
+
+    @Override
+    public void linesCleared(Simulation simulation, int[] rows, int count) {
+        compactLockedBlocks(rows, count);
+    }
+
+    @Override
+    public void gameOver(Simulation simulation) {
+        activePiece.dispose();
+        activePiece = null;
+    }
+
+    public Core getCore() {
+        return core;
+    }
+
+    public SkeletonRenderer getSkeletonRenderer() {
+        return skeletonRenderer;
+    }
+
+    public BlockSkeletonCache getBlockSkeletons() {
+        return blockSkeletons;
+    }
+
+    public BlockEntity[][] getLockedBlocks() {
+        return lockedBlocks;
+    }
+
+    public boolean isBlockInstancing() {
+        return blockInstancing;
+    }
+
+    /**
+     * @param blockInstancing true if blocks spawned from now on should share
+     * one skeleton per colour instead of animating their own.
+     */
+    public void setBlockInstancing(boolean blockInstancing) {
+        this.blockInstancing = blockInstancing;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+/**
+ * A {@link PlacementPolicy} that can decide in the background while the
+ * game keeps running. {@link PolicyController} starts the decision when a
+ * piece spawns and polls for it every step; the piece falls normally until
+ * the placement is known.
+ */
+public interface AsyncPlacementPolicy extends PlacementPolicy {
+    public final static int PENDING = 0;
+    public final static int CHOSEN = 1;
+    public final static int NO_PLACEMENT = 2;
+    
+    /**
+     * Starts choosing the placement of the active piece of the simulation.
+     * A decision that is still running for an earlier piece is discarded.
+     */
+    public void begin(Simulation simulation);
+    
+    /**
+     * @return {@link #PENDING} while the decision is running,
+     * {@link #CHOSEN} once the placement has been written to
+     * {@code placement}, or {@link #NO_PLACEMENT} if the piece cannot be
+     * placed anywhere.
+     */
+    public int poll(Placement placement);
+}
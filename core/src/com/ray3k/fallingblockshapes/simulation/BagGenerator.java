@@ -0,0 +1,93 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * Deals shapes from a shuffled bag that holds every shape of the set a
+ * fixed number of times, and refills the bag once it is empty. With seven
+ * shapes and one copy this is the familiar 7-bag; with larger libraries
+ * every shape still appears exactly that often per bag, which bounds both
+ * droughts and floods of a shape.
+ */
+public class BagGenerator implements PieceGenerator {
+    public final static Factory FACTORY = factory(1);
+    private final Array<CompiledShape> shapes;
+    private final RandomXS128 random;
+    private final int[] bag;
+    private int remaining;
+
+    /**
+     * @param copies how many times every shape is in the bag.
+     */
+    public BagGenerator(Array<CompiledShape> shapes, int copies, long seed) {
+        if (shapes.size == 0) {
+            throw new IllegalArgumentException("Shape set is empty.");
+        }
+        if (copies < 1) {
+            throw new IllegalArgumentException("Every shape needs at least one copy in the bag.");
+        }
+        this.shapes = shapes;
+        random = new RandomXS128(seed);
+        bag = new int[shapes.size * copies];
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i % shapes.size;
+        }
+        remaining = 0;
+    }
+    
+    /**
+     * Draws without replacement from the part of the bag that is left, a
+     * Fisher-Yates shuffle spread over the picks.
+     */
+    @Override
+    public CompiledShape next() {
+        if (remaining == 0) {
+            remaining = bag.length;
+        }
+        int pick = random.nextInt(remaining);
+        int shape = bag[pick];
+        remaining--;
+        bag[pick] = bag[remaining];
+        bag[remaining] = shape;
+        return shapes.get(shape);
+    }
+
+    @Override
+    public PieceGenerator split() {
+        return new BagGenerator(shapes, bag.length / shapes.size, random.nextLong());
+    }
+    
+    public static Factory factory(final int copies) {
+        return new Factory() {
+            @Override
+            public PieceGenerator newGenerator(Array<CompiledShape> shapes, long seed) {
+                return new BagGenerator(shapes, copies, seed);
+            }
+        };
+    }
+}
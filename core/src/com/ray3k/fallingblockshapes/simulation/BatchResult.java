@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+/**
+ * The outcome of every game played by a {@link BatchSimulator} run, indexed
+ * by game.
+ */
+public class BatchResult {
+    private final int[] scores;
+    private final int[] lines;
+    private final int[] levels;
+    private final int[] pieces;
+    private final boolean[] capped;
+    private long elapsedNanos;
+    private long ticks;
+
+    public BatchResult(int games) {
+        scores = new int[games];
+        lines = new int[games];
+        levels = new int[games];
+        pieces = new int[games];
+        capped = new boolean[games];
+    }
+    
+    /**
+     * Records a finished game. Each game writes only its own index, so games
+     * can be recorded from several threads.
+     */
+    void record(int game, Simulation simulation, boolean capped) {
+        scores[game] = simulation.getScore();
+        lines[game] = simulation.getTotalLines();
+        levels[game] = simulation.getLevelCount();
+        pieces[game] = simulation.getPieceCount();
+        this.capped[game] = capped;
+    }
+    
+    void finish(long elapsedNanos, long ticks) {
+        this.elapsedNanos = elapsedNanos;
+        this.ticks = ticks;
+    }
+    
+    public int getGameCount() {
+        return scores.length;
+    }
+    
+    /**
+     * @return the number of games that were stopped at the piece limit
+     * instead of ending in a game over.
+     */
+    public int getCappedCount() {
+        int count = 0;
+        for (boolean value : capped) {
+            if (value) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    public Distribution getScores() {
+        return new Distribution(scores);
+    }
+    
+    public Distribution getLines() {
+        return new Distribution(lines);
+    }
+    
+    public Distribution getLevels() {
+        return new Distribution(levels);
+    }
+    
+    /**
+     * @return the number of pieces each game survived, counting the piece
+     * that ended it.
+     */
+    public Distribution getPieces() {
+        return new Distribution(pieces);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the number of simulation steps over all games.
+     */
+    public long getTicks() {
+        return ticks;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many games of a shape set in parallel without a display. Every game
+ * is an independent {@link Simulation} with its own seed, piece stream and
+ * policy, stepped at the same fixed rate as the game loop, so results are
+ * reproducible for a given seed regardless of the number of threads.
+ */
+public class BatchSimulator {
+    public final static int DEFAULT_MAX_PIECES = 10000;
+    private final ForkJoinPool pool;
+    private int maxPieces;
+    private PieceGenerator.Factory generatorFactory;
+
+    public BatchSimulator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    public BatchSimulator(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+        maxPieces = DEFAULT_MAX_PIECES;
+        generatorFactory = UniformGenerator.FACTORY;
+    }
+    
+    /**
+     * Plays {@code games} games and blocks until all of them are finished.
+     * @param seed derives the seed of every game. The piece streams of the
+     * games are split from one generator whose seed is the first value drawn
+     * from this seed, and the policy seeds are the values drawn after it, so
+     * no policy reads the same random sequence as a piece stream.
+     */
+    public BatchResult run(Array<CompiledShape> shapes, int games, long seed, PlacementPolicy.Factory factory) {
+        if (shapes.size == 0) {
+            throw new IllegalArgumentException("Shape set is empty.");
+        }
+        
+        long[] seeds = new long[games];
+        PieceGenerator[] generators = new PieceGenerator[games];
+        RandomXS128 random = new RandomXS128(seed);
+        PieceGenerator root = generatorFactory.newGenerator(shapes, random.nextLong());
+        for (int i = 0; i < games; i++) {
+            seeds[i] = random.nextLong();
+            generators[i] = root.split();
+        }
+        
+        BatchResult result = new BatchResult(games);
+        long start = System.nanoTime();
+        long ticks = pool.invoke(new GameTask(shapes, seeds, generators, factory, result, 0, games));
+        result.finish(System.nanoTime() - start, ticks);
+        return result;
+    }
+    
+    private long play(Array<CompiledShape> shapes, int game, long seed, PieceGenerator generator, PlacementPolicy.Factory factory, BatchResult result) {
+        Simulation simulation = new Simulation(shapes, generator);
+        PolicyController controller = new PolicyController(factory.newPolicy(seed));
+        
+        simulation.start();
+        while (!simulation.isGameOver() && simulation.getPieceCount() <= maxPieces) {
+            simulation.step(Core.STEP, controller.poll(simulation));
+        }
+        
+        result.record(game, simulation, !simulation.isGameOver());
+        return simulation.getTick();
+    }
+    
+    public void shutdown() {
+        pool.shutdown();
+    }
+    
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * @param maxPieces games that survive this many pieces are stopped and
+     * counted as capped.
+     */
+    public void setMaxPieces(int maxPieces) {
+        this.maxPieces = maxPieces;
+    }
+
+    public PieceGenerator.Factory getGeneratorFactory() {
+        return generatorFactory;
+    }
+
+    /**
+     * @param generatorFactory creates the generator that the piece streams of
+     * the games are split from. It receives a seed drawn from the batch seed
+     * ahead of the policy seeds, so a weighted or bag generator needs no
+     * seed handling of its own to stay independent of the policies.
+     * {@link UniformGenerator#FACTORY} by default.
+     */
+    public void setGeneratorFactory(PieceGenerator.Factory generatorFactory) {
+        this.generatorFactory = generatorFactory;
+    }
+    
+    /**
+     * Splits a range of games in half until a single game is left.
+     */
+    private class GameTask extends RecursiveTask<Long> {
+        private final Array<CompiledShape> shapes;
+        private final long[] seeds;
+        private final PieceGenerator[] generators;
+        private final PlacementPolicy.Factory factory;
+        private final BatchResult result;
+        private final int from;
+        private final int to;
+
+        public GameTask(Array<CompiledShape> shapes, long[] seeds, PieceGenerator[] generators, PlacementPolicy.Factory factory, BatchResult result, int from, int to) {
+            this.shapes = shapes;
+            this.seeds = seeds;
+            this.generators = generators;
+            this.factory = factory;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= 1) {
+                long ticks = 0;
+                for (int game = from; game < to; game++) {
+                    ticks += play(shapes, game, seeds[game], generators[game], factory, result);
+                }
+                return ticks;
+            }
+            
+            int middle = (from + to) >>> 1;
+            GameTask left = new GameTask(shapes, seeds, generators, factory, result, from, middle);
+            GameTask right = new GameTask(shapes, seeds, generators, factory, result, middle, to);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+}
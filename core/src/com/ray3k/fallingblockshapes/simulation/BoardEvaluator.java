@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+
+/**
+ * Scores a board as a weighted sum of its aggregate column height, cleared
+ * lines, holes and bumpiness. Higher is better. An evaluator keeps scratch
+ * state and must not be shared between threads.
+ */
+public class BoardEvaluator {
+    public final static float DEFAULT_HEIGHT_WEIGHT = -.510066f;
+    public final static float DEFAULT_LINES_WEIGHT = .760666f;
+    public final static float DEFAULT_HOLES_WEIGHT = -.35663f;
+    public final static float DEFAULT_BUMPINESS_WEIGHT = -.184483f;
+    /**
+     * Added to boards whose stack reaches into the rows a new piece spawns
+     * in.
+     */
+    public final static float TOP_OUT_SCORE = -1000000.0f;
+    private final float heightWeight;
+    private final float linesWeight;
+    private final float holesWeight;
+    private final float bumpinessWeight;
+    private int[] heights;
+
+    public BoardEvaluator() {
+        this(DEFAULT_HEIGHT_WEIGHT, DEFAULT_LINES_WEIGHT, DEFAULT_HOLES_WEIGHT, DEFAULT_BUMPINESS_WEIGHT);
+    }
+    
+    public BoardEvaluator(float heightWeight, float linesWeight, float holesWeight, float bumpinessWeight) {
+        this.heightWeight = heightWeight;
+        this.linesWeight = linesWeight;
+        this.holesWeight = holesWeight;
+        this.bumpinessWeight = bumpinessWeight;
+        heights = new int[Playfield.DEFAULT_WIDTH];
+    }
+    
+    /**
+     * Creates an evaluator with the same weights for use on another thread.
+     */
+    public BoardEvaluator copy() {
+        return new BoardEvaluator(heightWeight, linesWeight, holesWeight, bumpinessWeight);
+    }
+    
+    /**
+     * @param lines the number of lines cleared to reach this board.
+     */
+    public float evaluate(Playfield playfield, int lines) {
+        int width = playfield.getWidth();
+        if (heights.length < width) {
+            heights = new int[width];
+        }
+        
+        for (int x = 0; x < width; x++) {
+            heights[x] = 0;
+        }
+        
+        //scan from the top so that every empty cell under a covered column is a hole
+        int fullRow = (1 << width) - 1;
+        int covered = 0;
+        int holes = 0;
+        for (int y = playfield.getStackHeight() - 1; y >= 0; y--) {
+            int row = playfield.getRow(y);
+            holes += Integer.bitCount(covered & ~row & fullRow);
+            
+            int newColumns = row & ~covered;
+            while (newColumns != 0) {
+                int x = Integer.numberOfTrailingZeros(newColumns);
+                heights[x] = y + 1;
+                newColumns &= newColumns - 1;
+            }
+            covered |= row;
+        }
+        
+        int aggregateHeight = 0;
+        int bumpiness = 0;
+        for (int x = 0; x < width; x++) {
+            aggregateHeight += heights[x];
+            if (x > 0) {
+                bumpiness += Math.abs(heights[x] - heights[x - 1]);
+            }
+        }
+        
+        float score = heightWeight * aggregateHeight + linesWeight * lines + holesWeight * holes + bumpinessWeight * bumpiness;
+        if (playfield.getStackHeight() > playfield.getHeight() - CompiledShape.SIZE) {
+            score += TOP_OUT_SCORE;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of one measurement over a batch of games.
+ */
+public class Distribution {
+    private final int[] sorted;
+    private final double mean;
+    private final double standardDeviation;
+
+    public Distribution(int[] values) {
+        sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        
+        double sum = 0;
+        for (int value : sorted) {
+            sum += value;
+        }
+        mean = sorted.length > 0 ? sum / sorted.length : 0;
+        
+        double squares = 0;
+        for (int value : sorted) {
+            squares += (value - mean) * (value - mean);
+        }
+        standardDeviation = sorted.length > 0 ? Math.sqrt(squares / sorted.length) : 0;
+    }
+    
+    /**
+     * @param percentile between 0 and 100.
+     * @return the nearest-rank percentile of the values.
+     */
+    public int getPercentile(double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(Math.max(rank - 1, 0), sorted.length - 1)];
+    }
+    
+    public int getMin() {
+        return sorted.length > 0 ? sorted[0] : 0;
+    }
+    
+    public int getMax() {
+        return sorted.length > 0 ? sorted[sorted.length - 1] : 0;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+    
+    public int getCount() {
+        return sorted.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("mean %.1f sd %.1f min %d p10 %d p50 %d p90 %d max %d", mean, standardDeviation, getMin(), getPercentile(10), getPercentile(50), getPercentile(90), getMax());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Places pieces with a {@link PlacementSearch} over the active piece and the
+ * upcoming shapes of the {@link PieceQueue}. Given a background executor,
+ * {@link #begin(Simulation)} searches a copy of the board on that executor
+ * so a deep search never holds up the game loop; otherwise it searches on
+ * the calling thread and the placement is ready right away.
+ */
+public class HeuristicPolicy implements AsyncPlacementPolicy {
+    /**
+     * Searches on the calling thread, for batches that already run one game
+     * per core.
+     */
+    public final static Factory FACTORY = new Factory() {
+        @Override
+        public PlacementPolicy newPolicy(long seed) {
+            return new HeuristicPolicy(new PlacementSearch(new BoardEvaluator()));
+        }
+    };
+    private final PlacementSearch search;
+    private final ExecutorService background;
+    private final Array<Request> requests;
+    private Request pending;
+    private int previewCount;
+
+    public HeuristicPolicy(PlacementSearch search) {
+        this(search, null);
+    }
+    
+    /**
+     * @param background runs one search at a time, or null to search on the
+     * calling thread. Must be single-threaded, as every search uses the
+     * same {@link PlacementSearch}.
+     */
+    public HeuristicPolicy(PlacementSearch search, ExecutorService background) {
+        this.search = search;
+        this.background = background;
+        requests = new Array<Request>();
+        previewCount = 1;
+    }
+    
+    @Override
+    public boolean choose(Simulation simulation, Placement placement) {
+        begin(simulation);
+        return waitForResult(placement);
+    }
+    
+    @Override
+    public void begin(Simulation simulation) {
+        if (pending != null) {
+            pending.discarded = true;
+        }
+        
+        pending = obtainRequest();
+        pending.set(simulation, previewCount);
+        if (background == null) {
+            pending.chosen = pending.call();
+        } else {
+            pending.future = background.submit(pending);
+        }
+    }
+    
+    @Override
+    public int poll(Placement placement) {
+        if (pending == null) {
+            return NO_PLACEMENT;
+        }
+        if (pending.future != null && !pending.future.isDone()) {
+            return PENDING;
+        }
+        return waitForResult(placement) ? CHOSEN : NO_PLACEMENT;
+    }
+    
+    private boolean waitForResult(Placement placement) {
+        Request request = pending;
+        pending = null;
+        if (request.future != null) {
+            try {
+                request.chosen = request.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Placement search was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Placement search failed.", e.getCause());
+            } finally {
+                request.future = null;
+            }
+        }
+        
+        if (request.chosen) {
+            placement.set(request.placement.rotation, request.placement.x);
+        }
+        return request.chosen;
+    }
+    
+    /**
+     * Reuses a request whose search has finished. A discarded search that is
+     * already running keeps its copy of the board until it is done, while
+     * one that has not started yet returns as soon as it is run.
+     */
+    private Request obtainRequest() {
+        for (int i = 0; i < requests.size; i++) {
+            Request request = requests.get(i);
+            if (request.future == null || request.future.isDone()) {
+                request.future = null;
+                return request;
+            }
+        }
+        Request request = new Request();
+        requests.add(request);
+        return request;
+    }
+
+    public PlacementSearch getSearch() {
+        return search;
+    }
+
+    public int getPreviewCount() {
+        return previewCount;
+    }
+
+    /**
+     * @param previewCount how many upcoming shapes are searched after the
+     * active piece, from 0 to {@link PieceQueue#CAPACITY}. Every shape adds
+     * another level of beam search.
+     */
+    public void setPreviewCount(int previewCount) {
+        if (previewCount < 0 || previewCount > PieceQueue.CAPACITY) {
+            throw new IllegalArgumentException("Preview count must be between 0 and " + PieceQueue.CAPACITY + ".");
+        }
+        this.previewCount = previewCount;
+    }
+    
+    /**
+     * A copy of everything a search reads, so the game can go on changing
+     * the simulation while it runs.
+     */
+    private class Request implements Callable<Boolean> {
+        private final CompiledShape[] pieces;
+        private final Placement placement;
+        private Playfield playfield;
+        private int pieceCount;
+        private int x;
+        private int y;
+        private boolean chosen;
+        private Future<Boolean> future;
+        private volatile boolean discarded;
+
+        public Request() {
+            pieces = new CompiledShape[1 + PieceQueue.CAPACITY];
+            placement = new Placement();
+        }
+        
+        public void set(Simulation simulation, int previewCount) {
+            Playfield source = simulation.getPlayfield();
+            if (playfield == null || playfield.getWidth() != source.getWidth() || playfield.getHeight() != source.getHeight()) {
+                playfield = new Playfield(source.getWidth(), source.getHeight());
+            }
+            playfield.set(source);
+            
+            pieces[0] = simulation.getPiece();
+            for (int i = 0; i < previewCount; i++) {
+                pieces[1 + i] = simulation.getPreview(i);
+            }
+            pieceCount = 1 + previewCount;
+            x = simulation.getPieceX();
+            y = simulation.getPieceY();
+            chosen = false;
+            discarded = false;
+        }
+
+        @Override
+        public Boolean call() {
+            if (discarded) {
+                return false;
+            }
+            return search.search(playfield, pieces, pieceCount, x, y, placement);
+        }
+    }
+}
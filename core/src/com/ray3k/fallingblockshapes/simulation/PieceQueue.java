@@ -0,0 +1,76 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * The upcoming pieces of a game. A ring buffer of {@link #CAPACITY} shapes
+ * is kept full, so up to that many pieces can be previewed and taking the
+ * next piece only moves the head of the buffer. How many of them are shown
+ * does not affect which pieces are drawn.
+ */
+public class PieceQueue {
+    public final static int CAPACITY = 6;
+    private final PieceGenerator generator;
+    private final CompiledShape[] buffer;
+    private int head;
+
+    public PieceQueue(PieceGenerator generator) {
+        this.generator = generator;
+        buffer = new CompiledShape[CAPACITY];
+    }
+    
+    /**
+     * Refills the buffer for a new game. The generator continues from where
+     * the last game left off.
+     */
+    public void fill() {
+        head = 0;
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = generator.next();
+        }
+    }
+    
+    /**
+     * Removes the first shape of the queue and draws a new shape for the end.
+     */
+    public CompiledShape next() {
+        CompiledShape shape = buffer[head];
+        buffer[head] = generator.next();
+        head = (head + 1) % buffer.length;
+        return shape;
+    }
+    
+    /**
+     * @param index 0 for the shape that spawns next, up to
+     * {@link #CAPACITY} - 1.
+     */
+    public CompiledShape peek(int index) {
+        if (index < 0 || index >= buffer.length) {
+            throw new IndexOutOfBoundsException("Preview index out of range: " + index);
+        }
+        return buffer[(head + index) % buffer.length];
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+/**
+ * Decides where each piece of a {@link Simulation} should go. A
+ * {@link PolicyController} turns the decision into player input, so a policy
+ * plays under the same rules and delays as a human.
+ */
+public interface PlacementPolicy {
+    /**
+     * Chooses the placement of the active piece of the simulation. Called
+     * once per piece, right after it spawns.
+     * @return false if the policy has no placement for the piece, in which
+     * case it is dropped where it is.
+     */
+    public boolean choose(Simulation simulation, Placement placement);
+    
+    /**
+     * Creates a policy for every game played by a {@link BatchSimulator}.
+     * Games run on several threads, so policies are not shared.
+     */
+    public interface Factory {
+        /**
+         * @param seed the seed of the game the policy will play.
+         */
+        public PlacementPolicy newPolicy(long seed);
+    }
+}
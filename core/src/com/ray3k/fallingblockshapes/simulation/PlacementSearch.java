@@ -0,0 +1,349 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Beam search over the placements of the active piece and the preview. Every
+ * reachable rotation and column of a piece is locked into a copy of each
+ * board in the beam and scored by a {@link BoardEvaluator}; the best
+ * {@code beamWidth} boards are expanded with the next piece. The placement of
+ * the active piece that leads to the best board at the end is chosen.
+ * <p>
+ * Candidates are split across workers by board and rotation. Each worker
+ * owns its scratch board and evaluator and all boards are allocated up
+ * front, so a search allocates nothing per candidate. Without an executor
+ * the workers run on the calling thread.
+ */
+public class PlacementSearch {
+    public final static int DEFAULT_BEAM_WIDTH = 8;
+    private final int beamWidth;
+    private final ExecutorService executor;
+    private final ArrayList<Worker> workers;
+    private final Candidates best;
+    private Playfield[] beam;
+    private Playfield[] nextBeam;
+    private int[] beamLines;
+    private int[] nextBeamLines;
+    private int[] beamRoots;
+    private int[] nextBeamRoots;
+    private int beamSize;
+    private CompiledShape shape;
+    private int startX;
+    private int startY;
+
+    public PlacementSearch(BoardEvaluator evaluator) {
+        this(evaluator, DEFAULT_BEAM_WIDTH, null, 1);
+    }
+    
+    /**
+     * @param executor runs the workers, or null to run them on the calling
+     * thread.
+     * @param workerCount the number of workers candidates are split across.
+     */
+    public PlacementSearch(BoardEvaluator evaluator, int beamWidth, ExecutorService executor, int workerCount) {
+        if (beamWidth < 1 || workerCount < 1) {
+            throw new IllegalArgumentException("Beam width and worker count must be positive.");
+        }
+        
+        this.beamWidth = beamWidth;
+        this.executor = executor;
+        workers = new ArrayList<Worker>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(i == 0 ? evaluator : evaluator.copy(), i));
+        }
+        best = new Candidates(beamWidth);
+        beamLines = new int[beamWidth];
+        nextBeamLines = new int[beamWidth];
+        beamRoots = new int[beamWidth];
+        nextBeamRoots = new int[beamWidth];
+    }
+    
+    /**
+     * Finds the best placement for {@code pieces[0]}, which is at
+     * {@code x, y} in its current rotation. The remaining pieces are the
+     * preview and are assumed to spawn normally.
+     * @return false if the piece cannot be placed anywhere.
+     */
+    public boolean search(Playfield playfield, CompiledShape[] pieces, int pieceCount, int x, int y, Placement placement) {
+        ensureBoards(playfield);
+        beam[0].set(playfield);
+        beamLines[0] = 0;
+        beamRoots[0] = 0;
+        beamSize = 1;
+        
+        for (int depth = 0; depth < pieceCount; depth++) {
+            shape = pieces[depth];
+            if (depth == 0) {
+                startX = x;
+                startY = y;
+            } else {
+                startX = shape.getSpawnX(playfield.getWidth());
+                startY = shape.getSpawnY(playfield.getHeight());
+            }
+            
+            runWorkers();
+            
+            best.clear();
+            for (int i = 0; i < workers.size(); i++) {
+                best.addAll(workers.get(i).candidates);
+            }
+            
+            if (best.size == 0) {
+                if (depth == 0) {
+                    return false;
+                }
+                break;
+            }
+            
+            for (int i = 0; i < best.size; i++) {
+                int node = best.nodes[i];
+                Playfield board = nextBeam[i];
+                board.set(beam[node]);
+                board.lock(shape, best.rotations[i], best.xs[i], best.ys[i]);
+                board.clearLines(best.ys[i] + shape.getBottom(best.rotations[i]), best.ys[i] + shape.getTop(best.rotations[i]));
+                nextBeamLines[i] = best.lines[i];
+                nextBeamRoots[i] = depth == 0 ? encode(best.rotations[i], best.xs[i]) : beamRoots[node];
+            }
+            
+            Playfield[] swapBoards = beam;
+            beam = nextBeam;
+            nextBeam = swapBoards;
+            int[] swap = beamLines;
+            beamLines = nextBeamLines;
+            nextBeamLines = swap;
+            swap = beamRoots;
+            beamRoots = nextBeamRoots;
+            nextBeamRoots = swap;
+            beamSize = best.size;
+        }
+        
+        //the beam is sorted best first
+        placement.set(decodeRotation(beamRoots[0]), decodeX(beamRoots[0]));
+        return true;
+    }
+    
+    private void runWorkers() {
+        if (executor == null || workers.size() == 1) {
+            for (int i = 0; i < workers.size(); i++) {
+                workers.get(i).call();
+            }
+        } else {
+            try {
+                for (Future<Void> future : executor.invokeAll(workers)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Placement search was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Placement search failed.", e.getCause());
+            }
+        }
+    }
+    
+    private void ensureBoards(Playfield playfield) {
+        if (beam == null || beam[0].getWidth() != playfield.getWidth() || beam[0].getHeight() != playfield.getHeight()) {
+            beam = new Playfield[beamWidth];
+            nextBeam = new Playfield[beamWidth];
+            for (int i = 0; i < beamWidth; i++) {
+                beam[i] = new Playfield(playfield.getWidth(), playfield.getHeight());
+                nextBeam[i] = new Playfield(playfield.getWidth(), playfield.getHeight());
+            }
+            for (int i = 0; i < workers.size(); i++) {
+                workers.get(i).scratch = new Playfield(playfield.getWidth(), playfield.getHeight());
+            }
+        }
+    }
+    
+    /**
+     * Creates a pool of daemon threads for searches that run alongside the
+     * game, so an unfinished search never keeps the application alive.
+     */
+    public static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+            
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "placement-search-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    private static int encode(int rotation, int x) {
+        return (x + CompiledShape.SIZE) * CompiledShape.ROTATIONS + rotation;
+    }
+    
+    private static int decodeRotation(int root) {
+        return root % CompiledShape.ROTATIONS;
+    }
+    
+    private static int decodeX(int root) {
+        return root / CompiledShape.ROTATIONS - CompiledShape.SIZE;
+    }
+    
+    public int getBeamWidth() {
+        return beamWidth;
+    }
+    
+    public int getWorkerCount() {
+        return workers.size();
+    }
+    
+    /**
+     * Expands every {@code workers.size()}th board and rotation pair of the
+     * beam, starting at its index.
+     */
+    private class Worker implements Callable<Void> {
+        private final BoardEvaluator evaluator;
+        private final int index;
+        private final Candidates candidates;
+        private Playfield scratch;
+
+        public Worker(BoardEvaluator evaluator, int index) {
+            this.evaluator = evaluator;
+            this.index = index;
+            candidates = new Candidates(beamWidth);
+        }
+
+        @Override
+        public Void call() {
+            candidates.clear();
+            int items = beamSize * CompiledShape.ROTATIONS;
+            for (int item = index; item < items; item += workers.size()) {
+                int node = item / CompiledShape.ROTATIONS;
+                int rotation = item % CompiledShape.ROTATIONS;
+                Playfield board = beam[node];
+                
+                //a rotation blocked by the ceiling is made once the piece has fallen far enough
+                int x = Math.max(-shape.getLeft(rotation), Math.min(startX, board.getWidth() - shape.getRight(rotation)));
+                int y = startY;
+                while (y > startY - CompiledShape.SIZE && !board.fits(shape, rotation, x, y)) {
+                    y--;
+                }
+                
+                for (int column = x; column >= -CompiledShape.SIZE && board.fits(shape, rotation, column, y); column--) {
+                    evaluate(node, rotation, column, y);
+                }
+                for (int column = x + 1; column < board.getWidth() && board.fits(shape, rotation, column, y); column++) {
+                    evaluate(node, rotation, column, y);
+                }
+            }
+            return null;
+        }
+        
+        private void evaluate(int node, int rotation, int x, int fromY) {
+            int y = fromY - beam[node].dropDistance(shape, rotation, x, fromY);
+            scratch.set(beam[node]);
+            scratch.lock(shape, rotation, x, y);
+            int lines = beamLines[node] + scratch.clearLines(y + shape.getBottom(rotation), y + shape.getTop(rotation));
+            candidates.add(evaluator.evaluate(scratch, lines), node, rotation, x, y, lines);
+        }
+    }
+    
+    /**
+     * The best candidates seen so far, sorted best first and capped at the
+     * beam width.
+     */
+    private static class Candidates {
+        private final float[] scores;
+        private final int[] nodes;
+        private final int[] rotations;
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] lines;
+        private int size;
+
+        public Candidates(int capacity) {
+            scores = new float[capacity];
+            nodes = new int[capacity];
+            rotations = new int[capacity];
+            xs = new int[capacity];
+            ys = new int[capacity];
+            lines = new int[capacity];
+        }
+        
+        public void clear() {
+            size = 0;
+        }
+        
+        public void add(float score, int node, int rotation, int x, int y, int lineCount) {
+            //ties go to the lowest board, rotation and column so the result doesn't depend on the worker count
+            int index = size;
+            while (index > 0 && (scores[index - 1] < score || scores[index - 1] == score && isAfter(index - 1, node, rotation, x))) {
+                index--;
+            }
+            if (index >= scores.length) {
+                return;
+            }
+            
+            int last = Math.min(size, scores.length - 1);
+            for (int i = last; i > index; i--) {
+                scores[i] = scores[i - 1];
+                nodes[i] = nodes[i - 1];
+                rotations[i] = rotations[i - 1];
+                xs[i] = xs[i - 1];
+                ys[i] = ys[i - 1];
+                lines[i] = lines[i - 1];
+            }
+            scores[index] = score;
+            nodes[index] = node;
+            rotations[index] = rotation;
+            xs[index] = x;
+            ys[index] = y;
+            lines[index] = lineCount;
+            if (size < scores.length) {
+                size++;
+            }
+        }
+        
+        private boolean isAfter(int index, int node, int rotation, int x) {
+            if (nodes[index] != node) {
+                return nodes[index] > node;
+            } else if (rotations[index] != rotation) {
+                return rotations[index] > rotation;
+            } else {
+                return xs[index] > x;
+            }
+        }
+        
+        public void addAll(Candidates other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.scores[i], other.nodes[i], other.rotations[i], other.xs[i], other.ys[i], other.lines[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * Steers the active piece of a simulation to the placement chosen by a
+ * {@link PlacementPolicy}. Rotation and movement are requested on the same
+ * tick and the piece is dropped once it is in place. Requests that the board
+ * blocks are repeated while the piece falls, so a rotation that does not fit
+ * under the ceiling is made as soon as there is room; a piece that cannot
+ * reach its placement at all locks wherever it lands. An
+ * {@link AsyncPlacementPolicy} is polled every step until it has decided, and
+ * the piece falls without input in the meantime.
+ */
+public class PolicyController {
+    private final PlacementPolicy policy;
+    private final AsyncPlacementPolicy asyncPolicy;
+    private final Placement target;
+    private int pieceCount;
+    private boolean placing;
+    private boolean choosing;
+
+    public PolicyController(PlacementPolicy policy) {
+        this.policy = policy;
+        asyncPolicy = policy instanceof AsyncPlacementPolicy ? (AsyncPlacementPolicy) policy : null;
+        target = new Placement();
+        pieceCount = -1;
+    }
+    
+    /**
+     * @return the {@link InputCommand} flags for the next step of the
+     * simulation.
+     */
+    public int poll(Simulation simulation) {
+        if (simulation.isGameOver()) {
+            return InputCommand.NONE;
+        }
+        
+        if (simulation.getPieceCount() != pieceCount) {
+            pieceCount = simulation.getPieceCount();
+            if (asyncPolicy != null) {
+                asyncPolicy.begin(simulation);
+                choosing = true;
+            } else {
+                placing = policy.choose(simulation, target);
+            }
+        }
+        
+        if (choosing) {
+            int result = asyncPolicy.poll(target);
+            if (result == AsyncPlacementPolicy.PENDING) {
+                return InputCommand.NONE;
+            }
+            choosing = false;
+            placing = result == AsyncPlacementPolicy.CHOSEN;
+        }
+        
+        int input = InputCommand.NONE;
+        if (placing) {
+            if (simulation.getRotation() != target.rotation) {
+                input |= InputCommand.ROTATE;
+            }
+            if (simulation.getPieceX() > target.x) {
+                input |= InputCommand.LEFT;
+            } else if (simulation.getPieceX() < target.x) {
+                input |= InputCommand.RIGHT;
+            }
+        }
+        
+        if (input == InputCommand.NONE) {
+            CompiledShape piece = simulation.getPiece();
+            if (simulation.getPlayfield().dropDistance(piece, simulation.getRotation(), simulation.getPieceX(), simulation.getPieceY()) > 0) {
+                input = InputCommand.DROP;
+            }
+        }
+        
+        return input;
+    }
+    
+    /**
+     * Forgets the current target so the policy is asked again on the next
+     * poll, for instance after a player took over in between.
+     */
+    public void reset() {
+        pieceCount = -1;
+    }
+    
+    public PlacementPolicy getPolicy() {
+        return policy;
+    }
+}
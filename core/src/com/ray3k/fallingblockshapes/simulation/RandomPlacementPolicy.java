@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+
+/**
+ * Places every piece in a random rotation and column that it fits in. A
+ * baseline for how long a shape set lasts without any strategy.
+ */
+public class RandomPlacementPolicy implements PlacementPolicy {
+    public final static Factory FACTORY = new Factory() {
+        @Override
+        public PlacementPolicy newPolicy(long seed) {
+            return new RandomPlacementPolicy(seed);
+        }
+    };
+    private final RandomXS128 random;
+
+    public RandomPlacementPolicy(long seed) {
+        random = new RandomXS128(seed);
+    }
+    
+    @Override
+    public boolean choose(Simulation simulation, Placement placement) {
+        Playfield playfield = simulation.getPlayfield();
+        CompiledShape piece = simulation.getPiece();
+        int y = simulation.getPieceY();
+        
+        int count = 0;
+        for (int rotation = 0; rotation < CompiledShape.ROTATIONS; rotation++) {
+            for (int x = -piece.getLeft(rotation); x + piece.getRight(rotation) <= playfield.getWidth(); x++) {
+                if (playfield.fits(piece, rotation, x, y)) {
+                    count++;
+                    if (random.nextInt(count) == 0) {
+                        placement.set(rotation, x);
+                    }
+                }
+            }
+        }
+        return count > 0;
+    }
+}
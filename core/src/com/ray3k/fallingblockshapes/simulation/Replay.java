@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.StreamUtils;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The seed of a game and the {@link InputCommand} flags of every step, which
+ * is all a {@link Simulation} needs to play the game again. Inputs are stored
+ * as runs of identical flags because most steps have no input at all.
+ * <p>
+ * The file format is the magic number, the version, the seed, the shape
+ * count and checksum, the step count and the run count, followed by every
+ * run as an input byte and a variable-length run length.
+ */
+public class Replay {
+    public final static int MAGIC = 0x46425352;
+    public final static int VERSION = 2;
+    private final long seed;
+    private final int shapeCount;
+    private final int shapeChecksum;
+    private final IntArray runInputs;
+    private final IntArray runLengths;
+    private long tickCount;
+
+    public Replay(long seed, Array<CompiledShape> shapes) {
+        this(seed, shapes.size, checksum(shapes));
+    }
+    
+    private Replay(long seed, int shapeCount, int shapeChecksum) {
+        this.seed = seed;
+        this.shapeCount = shapeCount;
+        this.shapeChecksum = shapeChecksum;
+        runInputs = new IntArray();
+        runLengths = new IntArray();
+    }
+    
+    /**
+     * Appends the input of the next step.
+     */
+    public void record(int input) {
+        int last = runInputs.size - 1;
+        if (last >= 0 && runInputs.get(last) == input) {
+            runLengths.incr(last, 1);
+        } else {
+            runInputs.add(input);
+            runLengths.add(1);
+        }
+        tickCount++;
+    }
+    
+    /**
+     * @return whether the replay was recorded with the same shapes in the
+     * same order. A replay of a different shape set diverges immediately.
+     */
+    public boolean matches(Array<CompiledShape> shapes) {
+        return shapes.size == shapeCount && checksum(shapes) == shapeChecksum;
+    }
+    
+    public static int checksum(Array<CompiledShape> shapes) {
+        int checksum = 1;
+        for (CompiledShape shape : shapes) {
+            checksum = 31 * checksum + Color.rgba8888(shape.getColor());
+            for (int mask : shape.getMask(0)) {
+                checksum = 31 * checksum + mask;
+            }
+        }
+        return checksum;
+    }
+    
+    public void write(FileHandle file) {
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(file.write(false)));
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeLong(seed);
+            output.writeInt(shapeCount);
+            output.writeInt(shapeChecksum);
+            output.writeLong(tickCount);
+            output.writeInt(runInputs.size);
+            for (int i = 0; i < runInputs.size; i++) {
+                output.writeByte(runInputs.get(i));
+                writeVarInt(output, runLengths.get(i));
+            }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error writing replay: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(output);
+        }
+    }
+    
+    public static Replay read(FileHandle file) {
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(file.read()));
+            if (input.readInt() != MAGIC) {
+                throw new GdxRuntimeException("Not a replay file: " + file.path());
+            }
+            int version = input.readByte();
+            if (version != VERSION) {
+                throw new GdxRuntimeException("Unsupported replay version " + version + ": " + file.path());
+            }
+            
+            Replay replay = new Replay(input.readLong(), input.readInt(), input.readInt());
+            long tickCount = input.readLong();
+            int runCount = input.readInt();
+            replay.runInputs.ensureCapacity(runCount);
+            replay.runLengths.ensureCapacity(runCount);
+            for (int i = 0; i < runCount; i++) {
+                replay.runInputs.add(input.readByte());
+                replay.runLengths.add(readVarInt(input));
+                replay.tickCount += replay.runLengths.peek();
+            }
+            
+            if (replay.tickCount != tickCount) {
+                throw new GdxRuntimeException("Replay is truncated: " + file.path());
+            }
+            return replay;
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading replay: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(input);
+        }
+    }
+    
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed run length.");
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+    
+    public int getRunCount() {
+        return runInputs.size;
+    }
+    
+    public int getRunInput(int run) {
+        return runInputs.get(run);
+    }
+    
+    public int getRunLength(int run) {
+        return runLengths.get(run);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * Reads the inputs of a {@link Replay} back one step at a time.
+ */
+public class ReplayPlayer {
+    private final Replay replay;
+    private int run;
+    private int offset;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+    }
+    
+    /**
+     * @return the input of the next step, or {@link InputCommand#NONE} once
+     * the replay is finished.
+     */
+    public int next() {
+        while (run < replay.getRunCount() && offset >= replay.getRunLength(run)) {
+            run++;
+            offset = 0;
+        }
+        
+        if (run >= replay.getRunCount()) {
+            return InputCommand.NONE;
+        }
+        
+        offset++;
+        return replay.getRunInput(run);
+    }
+    
+    public boolean isFinished() {
+        return run >= replay.getRunCount() || run == replay.getRunCount() - 1 && offset >= replay.getRunLength(run);
+    }
+    
+    public void rewind() {
+        run = 0;
+        offset = 0;
+    }
+
+    public Replay getReplay() {
+        return replay;
+    }
+    
+    /**
+     * Plays a replay from start to finish without a display.
+     * @param step the step the replay was recorded with.
+     * @return the simulation in the state the recorded game ended in.
+     */
+    public static Simulation simulate(Replay replay, Array<CompiledShape> shapes, float step) {
+        Simulation simulation = new Simulation(shapes, replay.getSeed());
+        ReplayPlayer player = new ReplayPlayer(replay);
+        simulation.start();
+        while (!player.isFinished()) {
+            simulation.step(step, player.next());
+        }
+        return simulation;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Playfield;
+
+/**
+ * The rules of the game without any rendering, audio or input polling. The
+ * simulation is advanced one fixed step at a time with the player input for
+ * that step and reports everything that happens to its listeners.
+ */
+public class Simulation {
+    public final static float INPUT_DELAY = .1f;
+    public final static float SLIDE_DELAY = .5f;
+    public final static float BASE_FALL_DELAY = .6f;
+    public final static int LINES_PER_LEVEL = 8;
+    private final static int[] LINE_SCORES = {0, 10, 25, 50, 100};
+    private final Array<CompiledShape> shapes;
+    private final Playfield playfield;
+    private final PieceQueue queue;
+    private final Array<SimulationListener> listeners;
+    private CompiledShape piece;
+    private int pieceX;
+    private int pieceY;
+    private int rotation;
+    private float inputCounter;
+    private float rotateCounter;
+    private float fallCounter;
+    private float fallDelay;
+    private int score;
+    private int lineCount;
+    private int levelCount;
+    private int totalLines;
+    private int pieceCount;
+    private long tick;
+    private boolean gameOver;
+
+    public Simulation(Array<CompiledShape> shapes, int width, int height, PieceGenerator generator) {
+        this.shapes = shapes;
+        playfield = new Playfield(width, height);
+        queue = new PieceQueue(generator);
+        listeners = new Array<SimulationListener>();
+        
+        playfield.addLineClearListener(new Playfield.LineClearListener() {
+            @Override
+            public void linesCleared(Playfield playfield, int[] rows, int count) {
+                scoreLines(rows, count);
+            }
+        });
+    }
+    
+    public Simulation(Array<CompiledShape> shapes, int width, int height, long seed) {
+        this(shapes, width, height, new UniformGenerator(shapes, seed));
+    }
+    
+    public Simulation(Array<CompiledShape> shapes, PieceGenerator generator) {
+        this(shapes, Playfield.DEFAULT_WIDTH, Playfield.DEFAULT_HEIGHT, generator);
+    }
+    
+    public Simulation(Array<CompiledShape> shapes, long seed) {
+        this(shapes, Playfield.DEFAULT_WIDTH, Playfield.DEFAULT_HEIGHT, seed);
+    }
+    
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeListener(SimulationListener listener) {
+        listeners.removeValue(listener, true);
+    }
+    
+    public void start() {
+        playfield.clear();
+        score = 0;
+        lineCount = LINES_PER_LEVEL;
+        levelCount = 1;
+        totalLines = 0;
+        pieceCount = 0;
+        tick = 0;
+        gameOver = false;
+        
+        queue.fill();
+        for (int i = 0; i < listeners.size; i++) {
+            listeners.get(i).scoreChanged(this);
+        }
+        spawn(queue.next());
+    }
+    
+    /**
+     * Advances the game by one step.
+     * @param input the {@link InputCommand} flags for this step.
+     */
+    public void step(float delta, int input) {
+        if (gameOver) {
+            return;
+        }
+        
+        tick++;
+        inputCounter -= delta;
+        rotateCounter -= delta;
+        fallCounter -= delta;
+        
+        if (rotateCounter < 0) {
+            rotateCounter = -1;
+            
+            if ((input & InputCommand.ROTATE) != 0) {
+                rotate();
+                rotateCounter = INPUT_DELAY;
+            } else if ((input & InputCommand.DROP) != 0) {
+                int distance = playfield.dropDistance(piece, rotation, pieceX, pieceY);
+                if (distance > 0) {
+                    pieceY -= distance;
+                    for (int i = 0; i < listeners.size; i++) {
+                        listeners.get(i).pieceMoved(this);
+                    }
+                }
+                for (int i = 0; i < listeners.size; i++) {
+                    listeners.get(i).pieceDropped(this);
+                }
+                fallCounter = SLIDE_DELAY;
+                rotateCounter = INPUT_DELAY;
+            }
+        }
+        
+        if (inputCounter < 0) {
+            inputCounter = -1;
+            
+            if ((input & InputCommand.LEFT) != 0) {
+                move(-1);
+                inputCounter = INPUT_DELAY;
+            } else if ((input & InputCommand.RIGHT) != 0) {
+                move(1);
+                inputCounter = INPUT_DELAY;
+            }
+        }
+        
+        if (fallCounter < 0) {
+            fallCounter = fallDelay;
+            
+            if (!playfield.fits(piece, rotation, pieceX, pieceY - 1)) {
+                lock();
+                spawn(queue.next());
+            } else {
+                pieceY--;
+                for (int i = 0; i < listeners.size; i++) {
+                    listeners.get(i).pieceMoved(this);
+                    listeners.get(i).pieceFell(this);
+                }
+                
+                if (!playfield.fits(piece, rotation, pieceX, pieceY - 1)) {
+                    fallCounter = SLIDE_DELAY;
+                    for (int i = 0; i < listeners.size; i++) {
+                        listeners.get(i).pieceLanded(this);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void move(int direction) {
+        if (playfield.fits(piece, rotation, pieceX + direction, pieceY)) {
+            pieceX += direction;
+            for (int i = 0; i < listeners.size; i++) {
+                listeners.get(i).pieceMoved(this);
+            }
+        }
+    }
+    
+    private void rotate() {
+        int nextRotation = CompiledShape.nextRotation(rotation);
+        int nextX = pieceX;
+        int nextY = pieceY + piece.getBottom(rotation) - piece.getBottom(nextRotation);
+        
+        if (nextX + piece.getLeft(nextRotation) < 0) {
+            nextX = -piece.getLeft(nextRotation);
+        } else if (nextX + piece.getRight(nextRotation) > playfield.getWidth()) {
+            nextX = playfield.getWidth() - piece.getRight(nextRotation);
+        }
+        
+        if (playfield.fits(piece, nextRotation, nextX, nextY)) {
+            rotation = nextRotation;
+            pieceX = nextX;
+            pieceY = nextY;
+            for (int i = 0; i < listeners.size; i++) {
+                listeners.get(i).pieceMoved(this);
+            }
+        }
+    }
+    
+    private void lock() {
+        playfield.lock(piece, rotation, pieceX, pieceY);
+        for (int i = 0; i < listeners.size; i++) {
+            listeners.get(i).pieceLocked(this);
+        }
+        
+        playfield.clearLines(pieceY + piece.getBottom(rotation), pieceY + piece.getTop(rotation));
+    }
+    
+    private void spawn(CompiledShape shape) {
+        piece = shape;
+        rotation = 0;
+        pieceX = shape.getSpawnX(playfield.getWidth());
+        pieceY = shape.getSpawnY(playfield.getHeight());
+        pieceCount++;
+        
+        inputCounter = -1;
+        rotateCounter = -1;
+        fallDelay = BASE_FALL_DELAY / levelCount;
+        fallCounter = fallDelay;
+        
+        for (int i = 0; i < listeners.size; i++) {
+            listeners.get(i).pieceSpawned(this);
+        }
+        
+        if (!playfield.fits(piece, rotation, pieceX, pieceY)) {
+            gameOver = true;
+            for (int i = 0; i < listeners.size; i++) {
+                listeners.get(i).gameOver(this);
+            }
+        }
+    }
+    
+    private void scoreLines(int[] rows, int count) {
+        score += LINE_SCORES[Math.min(count, LINE_SCORES.length - 1)] * levelCount;
+        totalLines += count;
+        lineCount -= count;
+        if (lineCount <= 0) {
+            lineCount = LINES_PER_LEVEL;
+            levelCount++;
+        }
+        
+        for (int i = 0; i < listeners.size; i++) {
+            listeners.get(i).linesCleared(this, rows, count);
+        }
+        
+        for (int i = 0; i < listeners.size; i++) {
+            listeners.get(i).scoreChanged(this);
+        }
+    }
+    
+
+    public Playfield getPlayfield() {
+        return playfield;
+    }
+
+    public Array<CompiledShape> getShapes() {
+        return shapes;
+    }
+
+    public CompiledShape getPiece() {
+        return piece;
+    }
+
+    public CompiledShape getNextShape() {
+        return queue.peek(0);
+    }
+    
+    /**
+     * @param index 0 for the shape that spawns next, up to
+     * {@link PieceQueue#CAPACITY} - 1.
+     */
+    public CompiledShape getPreview(int index) {
+        return queue.peek(index);
+    }
+
+    public int getPieceX() {
+        return pieceX;
+    }
+
+    public int getPieceY() {
+        return pieceY;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public float getFallDelay() {
+        return fallDelay;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return the number of lines left to clear before the next level.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    public int getTotalLines() {
+        return totalLines;
+    }
+
+    /**
+     * @return the number of pieces spawned since the game started, including
+     * the active piece.
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.simulation;
+
+/**
+ * {@link SimulationListener} with empty methods, for listeners that only need
+ * a few of the events.
+ */
+public class SimulationAdapter implements SimulationListener {
+
+    @Override
+    public void pieceSpawned(Simulation simulation) {
+    }
+
+    @Override
+    public void pieceMoved(Simulation simulation) {
+    }
+
+    @Override
+    public void pieceFell(Simulation simulation) {
+    }
+
+    @Override
+    public void pieceLanded(Simulation simulation) {
+    }
+
+    @Override
+    public void pieceDropped(Simulation simulation) {
+    }
+
+    @Override
+    public void pieceLocked(Simulation simulation) {
+    }
+
+    @Override
+    public void linesCleared(Simulation simulation, int[] rows, int count) {
+    }
+
+    @Override
+    public void scoreChanged(Simulation simulation) {
+    }
+
+    @Override
+    public void gameOver(Simulation simulation) {
+    }
+}
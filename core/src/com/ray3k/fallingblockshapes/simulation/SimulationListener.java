@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ray3k.fallingblockshapes.simulation;
+
+/**
+ * Receives the events of a {@link Simulation}. Events are delivered
+ * synchronously from within {@link Simulation#step(float, int)} and
+ * {@link Simulation#start()}.
+ */
+public interface SimulationListener {
+    /**
+     * A new active piece has been placed at the top of the board. The next
+     * shape has already been replaced.
+     */
+    public void pieceSpawned(Simulation simulation);
+    
+    /**
+     * The active piece changed column, row or rotation.
+     */
+    public void pieceMoved(Simulation simulation);
+    
+    /**
+     * The active piece fell one row because of gravity.
+     */
+    public void pieceFell(Simulation simulation);
+    
+    /**
+     * The active piece came to rest on the stack and will lock when the
+     * slide delay runs out.
+     */
+    public void pieceLanded(Simulation simulation);
+    
+    /**
+     * The active piece was hard dropped.
+     */
+    public void pieceDropped(Simulation simulation);
+    
+    /**
+     * The active piece has been written into the playfield. Full rows have not
+     * been cleared yet.
+     */
+    public void pieceLocked(Simulation simulation);
+    
+    /**
+     * Full rows were removed from the playfield.
+     * @param rows the indices of the cleared rows before the playfield was
+     * compacted, in ascending order. Only the first {@code count} entries are
+     * valid and the array is reused.
+     */
+    public void linesCleared(Simulation simulation, int[] rows, int count);
+    
+    /**
+     * The score, remaining line count or level changed.
+     */
+    public void scoreChanged(Simulation simulation);
+    
+    /**
+     * A newly spawned piece did not fit on the board.
+     */
+    public void gameOver(Simulation simulation);
+}
@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * Picks every shape with the same probability, independently of the pieces
+ * before it.
+ */
+public class UniformGenerator implements PieceGenerator {
+    public final static Factory FACTORY = new Factory() {
+        @Override
+        public PieceGenerator newGenerator(Array<CompiledShape> shapes, long seed) {
+            return new UniformGenerator(shapes, seed);
+        }
+    };
+    private final Array<CompiledShape> shapes;
+    private final RandomXS128 random;
+
+    public UniformGenerator(Array<CompiledShape> shapes, long seed) {
+        if (shapes.size == 0) {
+            throw new IllegalArgumentException("Shape set is empty.");
+        }
+        this.shapes = shapes;
+        random = new RandomXS128(seed);
+    }
+    
+    @Override
+    public CompiledShape next() {
+        return shapes.get(random.nextInt(shapes.size));
+    }
+
+    @Override
+    public PieceGenerator split() {
+        return new UniformGenerator(shapes, random.nextLong());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.fallingblockshapes.simulation;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+
+/**
+ * Picks shapes in proportion to per-shape weights. The weights are turned
+ * into an alias table once, so every pick costs one random index and one
+ * random float no matter how many shapes there are.
+ */
+public class WeightedGenerator implements PieceGenerator {
+    private final Array<CompiledShape> shapes;
+    private final RandomXS128 random;
+    private final float[] probabilities;
+    private final int[] aliases;
+
+    /**
+     * @param weights one non-negative weight per shape, in the order of the
+     * shapes. At least one weight must be positive.
+     */
+    public WeightedGenerator(Array<CompiledShape> shapes, float[] weights, long seed) {
+        if (shapes.size == 0) {
+            throw new IllegalArgumentException("Shape set is empty.");
+        }
+        if (weights.length != shapes.size) {
+            throw new IllegalArgumentException("Expected " + shapes.size + " weights, got " + weights.length + ".");
+        }
+        this.shapes = shapes;
+        random = new RandomXS128(seed);
+        probabilities = new float[weights.length];
+        aliases = new int[weights.length];
+        buildAliasTable(weights);
+    }
+    
+    private WeightedGenerator(WeightedGenerator parent, long seed) {
+        shapes = parent.shapes;
+        random = new RandomXS128(seed);
+        probabilities = parent.probabilities;
+        aliases = parent.aliases;
+    }
+    
+    /**
+     * Vose's method: every column of the table holds the probability of its
+     * own shape and the shape that fills the rest of the column.
+     */
+    private void buildAliasTable(float[] weights) {
+        int count = weights.length;
+        double total = 0;
+        for (float weight : weights) {
+            if (weight < 0 || Float.isNaN(weight) || Float.isInfinite(weight)) {
+                throw new IllegalArgumentException("Weights must be finite and non-negative.");
+            }
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one weight must be positive.");
+        }
+        
+        double[] scaled = new double[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            scaled[i] = weights[i] * count / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probabilities[less] = (float) scaled[less];
+            aliases[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        
+        //whatever is left over is 1 up to rounding errors
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probabilities[index] = 1;
+            aliases[index] = index;
+        }
+    }
+    
+    @Override
+    public CompiledShape next() {
+        int column = random.nextInt(probabilities.length);
+        return shapes.get(random.nextFloat() < probabilities[column] ? column : aliases[column]);
+    }
+
+    @Override
+    public PieceGenerator split() {
+        return new WeightedGenerator(this, random.nextLong());
+    }
+    
+    public static Factory factory(final float[] weights) {
+        return new Factory() {
+            @Override
+            public PieceGenerator newGenerator(Array<CompiledShape> shapes, long seed) {
+                return new WeightedGenerator(shapes, weights, seed);
+            }
+        };
+    }
+}
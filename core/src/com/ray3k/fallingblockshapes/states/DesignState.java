@@ -38,7 +38,6 @@ import com.badlogic.gdx.scenes.scene2d.ui.ButtonGroup;
 import com.badlogic.gdx.scenes.scene2d.ui.Container;
 import com.badlogic.gdx.scenes.scene2d.ui.Dialog;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
-import com.badlogic.gdx.scenes.scene2d.ui.ImageTextButton;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.ScrollPane;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
@@ -49,11 +48,13 @@ import com.badlogic.gdx.scenes.scene2d.ui.TextField;
 import com.badlogic.gdx.scenes.scene2d.utils.ChangeListener;
 import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.utils.Align;
-import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.fallingblockshapes.AsyncFileWriter;
 import com.ray3k.fallingblockshapes.Core;
 import com.ray3k.fallingblockshapes.SaveShape;
+import com.ray3k.fallingblockshapes.ShapeBrowser;
+import com.ray3k.fallingblockshapes.ShapeThumbnails;
 import com.ray3k.fallingblockshapes.SpineDrawable;
 import com.ray3k.fallingblockshapes.State;
 
@@ -64,6 +65,8 @@ public class DesignState extends State {
     private SaveShape saveImage;
     private Image[][] images;
     private SpineDrawable spineDrawable;
+    private AsyncFileWriter.Listener pendingSave;
+    private ShapeThumbnails thumbnails;
 
     public DesignState(Core core) {
         super(core);
@@ -200,6 +203,7 @@ public class DesignState extends State {
 
     @Override
     public void stop() {
+        pendingSave = null;
     }
 
     @Override
@@ -380,39 +384,38 @@ public class DesignState extends State {
         final TextButton textButton = new TextButton("OK", skin);
         final Dialog dialog = new Dialog("", skin);
         
+        if (thumbnails == null) {
+            thumbnails = new ShapeThumbnails(getCore().getPixmapPacker(), getCore().getAtlas());
+        }
+        final ShapeBrowser browser = new ShapeBrowser(getCore().getShapeCatalog(), thumbnails, skin);
         
         Label label = new Label("Select a shape.", skin);
         dialog.getContentTable().add(label);
         
         dialog.getContentTable().row();
-        Table table = new Table();
-        ScrollPane scrollPane = new ScrollPane(table, skin);
+        final TextField filterField = new TextField("", skin);
+        filterField.setMessageText("Filter");
+        dialog.getContentTable().add(filterField).growX();
+        filterField.setTextFieldListener(new TextField.TextFieldListener() {
+            @Override
+            public void keyTyped(TextField textField, char c) {
+                browser.setFilter(textField.getText());
+            }
+        });
+        
+        dialog.getContentTable().row();
+        ScrollPane scrollPane = new ScrollPane(browser, skin);
         scrollPane.setFadeScrollBars(false);
+        scrollPane.setScrollingDisabled(true, false);
         dialog.getContentTable().add(scrollPane).grow();
         
-        ButtonGroup buttonGroup = new ButtonGroup();
-        for (final FileHandle file : Gdx.files.local(Core.DATA_PATH + "/shapes").list()) {
-            ImageTextButton button = new ImageTextButton(file.nameWithoutExtension(), skin);
-            buttonGroup.add(button);
-            table.add(button);
-            table.row();
-            button.addListener(new ChangeListener() {
-                @Override
-                public void changed(ChangeListener.ChangeEvent event,
-                        Actor actor) {
-                    textButton.setUserObject(file);
-                }
-            });
-        }
-        textButton.setUserObject(Gdx.files.local(Core.DATA_PATH + "/shapes").list()[0]);
-        
         dialog.getContentTable().row();
         dialog.getContentTable().add(textButton);
         
         textButton.addListener(new ChangeListener() {
             @Override
             public void changed(ChangeListener.ChangeEvent event, Actor actor) {
-                loadShape((FileHandle)textButton.getUserObject());
+                loadShape(browser.getSelected());
                 dialog.hide();
             }
         });
@@ -427,21 +430,37 @@ public class DesignState extends State {
         getCore().getStateManager().loadState("menu");
     }
     
-    private void saveShape(String name) {
-        FileHandle parent = new FileHandle(Core.DATA_PATH + "/shapes");
-        parent.mkdirs();
-        
-        FileHandle saveFile = parent.child(name + ".shape");
-        
-        Json json = new Json();
-        saveFile.writeString(json.toJson(saveImage), false);
-        getCore().getStateManager().loadState("menu");
+    private void saveShape(final String name) {
+        //the menu is shown once the file is on disk, unless the designer was left in the meantime
+        pendingSave = new AsyncFileWriter.Listener() {
+            @Override
+            public void written(FileHandle file) {
+                if (pendingSave == this) {
+                    pendingSave = null;
+                    getCore().getStateManager().loadState("menu");
+                }
+            }
+
+            @Override
+            public void failed(FileHandle file, Exception exception) {
+                Gdx.app.error(DesignState.class.getName(), "Error saving shape: " + file.path(), exception);
+                if (pendingSave == this) {
+                    pendingSave = null;
+                    Dialog dialog = new Dialog("", skin);
+                    dialog.text("Could not save " + name + ".");
+                    dialog.button("OK");
+                    dialog.show(stage);
+                }
+            }
+        };
+        getCore().getShapeCatalog().save(name, saveImage, pendingSave);
     }
     
-    private void loadShape(FileHandle fileHandle) {
-        if (fileHandle != null) {
-            Json json = new Json();
-            saveImage = json.fromJson(SaveShape.class, fileHandle);
+    private void loadShape(String name) {
+        SaveShape catalogShape = name == null ? null : getCore().getShapeCatalog().getSaveShape(name);
+        if (catalogShape != null) {
+            //the catalog's copy is shared, edit a copy of it
+            saveImage = new SaveShape(catalogShape);
             for (int y = 0; y < 4; y++) {
                 for (int x = 0; x < 4; x++) {
                     images[x][y].setVisible(saveImage.grid[x][y]);
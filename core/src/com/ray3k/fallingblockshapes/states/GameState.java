@@ -24,13 +24,14 @@
 package com.ray3k.fallingblockshapes.states;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Container;
@@ -40,20 +41,40 @@ import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.scenes.scene2d.ui.Stack;
 import com.badlogic.gdx.scenes.scene2d.ui.Table;
 import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.StringBuilder;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.fallingblockshapes.CompiledShape;
 import com.ray3k.fallingblockshapes.Core;
 import com.ray3k.fallingblockshapes.EntityManager;
+import com.ray3k.fallingblockshapes.FrameProfiler;
 import com.ray3k.fallingblockshapes.InputManager;
-import com.ray3k.fallingblockshapes.SaveShape;
-import com.ray3k.fallingblockshapes.SpineDrawable;
+import com.ray3k.fallingblockshapes.PiecePreview;
+import com.ray3k.fallingblockshapes.Playfield;
 import com.ray3k.fallingblockshapes.State;
-import com.ray3k.fallingblockshapes.entities.TetrominoEntity;
+import com.ray3k.fallingblockshapes.entities.BlockEntity;
+import com.ray3k.fallingblockshapes.entities.BlockSkeletonCache;
+import com.ray3k.fallingblockshapes.entities.GameOverTimerEntity;
+import com.ray3k.fallingblockshapes.entities.PlayfieldEntities;
+import com.ray3k.fallingblockshapes.simulation.BoardEvaluator;
+import com.ray3k.fallingblockshapes.simulation.HeuristicPolicy;
+import com.ray3k.fallingblockshapes.simulation.InputCommand;
+import com.ray3k.fallingblockshapes.simulation.PieceQueue;
+import com.ray3k.fallingblockshapes.simulation.PlacementSearch;
+import com.ray3k.fallingblockshapes.simulation.PolicyController;
+import com.ray3k.fallingblockshapes.simulation.Replay;
+import com.ray3k.fallingblockshapes.simulation.ReplayPlayer;
+import com.ray3k.fallingblockshapes.simulation.Simulation;
+import com.ray3k.fallingblockshapes.simulation.SimulationAdapter;
+import java.util.concurrent.ExecutorService;
 
 public class GameState extends State {
-    private int score;
+    public static final String LAST_REPLAY_PATH = "replays/last.replay";
+    public static final int DEFAULT_PREVIEW_COUNT = 3;
+    public static final String PROFILE_PATH = "profiles/frame-profile.csv";
+    private static final float PROFILER_UPDATE_DELAY = .5f;
     private static int highscore = 0;
     private OrthographicCamera gameCamera;
     private Viewport gameViewport;
@@ -67,13 +88,27 @@ public class GameState extends State {
     private Label levelLabel;
     private Label linesLabel;
     private EntityManager entityManager;
-    private SpineDrawable previewDrawable;
     private Table gameTable;
-    private Array<SaveShape> shapes;
-    private int lineCount;
-    private int levelCount;
-    private SaveShape nextShape;
-    private Table previewTable;
+    private Array<CompiledShape> shapes;
+    private PiecePreview preview;
+    private int previewCount;
+    private Simulation simulation;
+    private PlayfieldEntities playfieldEntities;
+    private BlockSkeletonCache blockSkeletons;
+    private boolean blockInstancing;
+    private boolean autoplay;
+    private PolicyController autoplayController;
+    private ExecutorService autoplayExecutor;
+    private ExecutorService autoplaySearchExecutor;
+    private Replay recording;
+    private ReplayPlayer playback;
+    private Replay pendingReplay;
+    private boolean replayRequested;
+    private Label profilerLabel;
+    private final StringBuilder profilerText;
+    private final StringBuilder numberText;
+    private final ObjectMap<String, Sound> sounds;
+    private float profilerTimer;
     
     public static enum Team {
         PLAYER, ENEMY;
@@ -81,15 +116,17 @@ public class GameState extends State {
     
     public GameState(Core core) {
         super(core);
+        blockInstancing = true;
+        profilerText = new StringBuilder();
+        previewCount = DEFAULT_PREVIEW_COUNT;
+        numberText = new StringBuilder();
+        sounds = new ObjectMap<String, Sound>();
     }
     
     @Override
     public void start() {
-        score = 0;
-        lineCount = 8;
-        levelCount = 1;
-        
         inputManager = new InputManager(); 
+        sounds.clear();
         
         uiCamera = new OrthographicCamera();
         uiViewport = new ScreenViewport(uiCamera);
@@ -111,28 +148,75 @@ public class GameState extends State {
         inputMultiplexer.addProcessor(stage);
         Gdx.input.setInputProcessor(inputMultiplexer);
         
+        //toggles are handled on key events because several steps can run per frame
+        inputManager.addKeyActionListener(new InputManager.KeyActionListener() {
+            @Override
+            public void keyPressed(int key) {
+                if (key == Keys.F2 && playback == null) {
+                    setAutoplay(!autoplay);
+                } else if (key == Keys.F3) {
+                    replayRequested = true;
+                } else if (key == Keys.F4 && playback != null) {
+                    getCore().setFastForward(!getCore().isFastForward());
+                } else if (key == Keys.F1) {
+                    profilerLabel.setVisible(!profilerLabel.isVisible());
+                } else if (key == Keys.F6) {
+                    getCore().getProfiler().writeCsv(Gdx.files.local(PROFILE_PATH));
+                }
+            }
+        });
+        
         table = new Table();
         table.setFillParent(true);
         stage.addActor(table);
         
         entityManager = new EntityManager();
         
-        previewDrawable = new SpineDrawable(getCore().getAssetManager().get(Core.DATA_PATH + "/spine/tetromino.json", SkeletonData.class), getCore().getSkeletonRenderer());
-        
-        shapes = new Array<SaveShape>();
-        FileHandle parent = new FileHandle(Core.DATA_PATH + "/shapes/");
-        Json json = new Json();
-        for (FileHandle file : parent.list()) {
-            shapes.add(json.fromJson(SaveShape.class, file));
+        if (blockSkeletons == null) {
+            blockSkeletons = new BlockSkeletonCache(getCore().getAssetManager().get(Core.DATA_PATH + "/spine/tetromino.json", SkeletonData.class));
+            playfieldEntities = new PlayfieldEntities(getCore(), getCore().getSkeletonRenderer());
+            playfieldEntities.setBlockInstancing(blockInstancing);
         }
         
-        nextShape = getShapes().random();
+        shapes = getCore().getShapeCatalog().getShapes();
+        
         createStageElements();
         
+        //F1 shows the median, 99th percentile and maximum of every phase, F6 saves them as CSV
+        Table profilerTable = new Table();
+        profilerTable.setFillParent(true);
+        profilerTable.top().left().pad(10.0f);
+        stage.addActor(profilerTable);
+        profilerLabel = new Label("", skin);
+        profilerLabel.setVisible(false);
+        profilerTable.add(profilerLabel);
+        getCore().getProfiler().clear();
+        profilerTimer = 0;
+        
         Vector2 coord = gameTable.localToStageCoordinates(new Vector2(8.0f, 8.0f));
         
         gameCamera.position.set(Gdx.graphics.getWidth() / 2.0f - coord.x, Gdx.graphics.getHeight() / 2.0f - coord.y, 0);
-        TetrominoEntity tet = new TetrominoEntity(this, shapes.random());
+        
+        long seed;
+        if (pendingReplay != null) {
+            if (!pendingReplay.matches(shapes)) {
+                Gdx.app.error(GameState.class.getName(), "Replay was recorded with a different shape set and will diverge.");
+            }
+            seed = pendingReplay.getSeed();
+            playback = new ReplayPlayer(pendingReplay);
+            recording = null;
+            pendingReplay = null;
+        } else {
+            seed = MathUtils.random.nextLong();
+            playback = null;
+            recording = new Replay(seed, shapes);
+        }
+        
+        simulation = new Simulation(shapes, seed);
+        playfieldEntities.start(simulation, entityManager, blockSkeletons);
+        simulation.addListener(playfieldEntities);
+        simulation.addListener(new GameListener());
+        simulation.start();
     }
     
     private void createStageElements() {
@@ -192,11 +276,9 @@ public class GameState extends State {
         table.add(label).padBottom(20.0f);
         
         table.row();
-        previewTable = new Table(skin);
-        previewTable.setBackground("window");
-        table.add(previewTable).width(116.0f).height(116.0f);
-        
-        generatePreview();
+        preview = new PiecePreview(getCore().getAssetManager().get(Core.DATA_PATH + "/spine/tetromino.json", SkeletonData.class), getCore().getSkeletonRenderer(), skin, "window");
+        preview.setCount(previewCount);
+        table.add(preview);
         
         root.validate();
     }
@@ -206,28 +288,113 @@ public class GameState extends State {
         Gdx.gl.glClearColor(0.0f, 0.0f, 0.0f, 1);
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         
+        FrameProfiler profiler = getCore().getProfiler();
+        profiler.begin(FrameProfiler.STAGE_DRAW);
         stage.draw();
+        profiler.end(FrameProfiler.STAGE_DRAW);
+        profiler.addBatch(stage.getBatch());
         
         gameCamera.update();
         spriteBatch.setProjectionMatrix(gameCamera.combined);
         spriteBatch.begin();
+        profiler.begin(FrameProfiler.ENTITY_DRAW);
         entityManager.draw(spriteBatch, delta);
+        profiler.end(FrameProfiler.ENTITY_DRAW);
         spriteBatch.end();
+        profiler.record(FrameProfiler.ENTITIES, entityManager.getEntities().size());
     }
 
     @Override
     public void act(float delta) {
+        if (replayRequested) {
+            replayRequested = false;
+            FileHandle file = Gdx.files.local(LAST_REPLAY_PATH);
+            if (file.exists()) {
+                playReplay(Replay.read(file));
+                getCore().getStateManager().loadState("game");
+                return;
+            }
+        }
+        
+        int input;
+        if (playback != null) {
+            input = pollPlaybackInput();
+        } else {
+            input = pollInput();
+        }
+        
+        if (recording != null && !simulation.isGameOver()) {
+            recording.record(input);
+        }
+        entityManager.beginStep();
+        simulation.step(delta, input);
+        blockSkeletons.update(delta);
+        
+        FrameProfiler profiler = getCore().getProfiler();
+        profiler.begin(FrameProfiler.ENTITY_ACT);
         entityManager.act(delta);
+        profiler.end(FrameProfiler.ENTITY_ACT);
+        
+        profilerTimer -= delta;
+        if (profilerLabel.isVisible() && profilerTimer < 0) {
+            profilerTimer = PROFILER_UPDATE_DELAY;
+            profilerText.setLength(0);
+            profiler.appendSummary(profilerText);
+            profilerText.append("render queue sorts/s: ").append(entityManager.getRenderQueue().getSortsPerSecond());
+            profilerText.append("\ndropped steps: ").append(getCore().getDroppedSteps());
+            profilerLabel.setText(profilerText);
+        }
         
+        profiler.begin(FrameProfiler.STAGE_ACT);
         stage.act(delta);
+        profiler.end(FrameProfiler.STAGE_ACT);
+    }
+
+    private int pollPlaybackInput() {
+        if (playback.isFinished()) {
+            getCore().setFastForward(false);
+        }
+        return playback.next();
+    }
+    
+    private int pollInput() {
+        if (autoplay) {
+            return autoplayController.poll(simulation);
+        }
+        
+        int input = InputCommand.NONE;
+        if (Gdx.input.isKeyPressed(Keys.LEFT) || Gdx.input.isKeyPressed(Keys.A)) {
+            input |= InputCommand.LEFT;
+        }
+        if (Gdx.input.isKeyPressed(Keys.RIGHT) || Gdx.input.isKeyPressed(Keys.D)) {
+            input |= InputCommand.RIGHT;
+        }
+        if (Gdx.input.isKeyJustPressed(Keys.UP) || Gdx.input.isKeyJustPressed(Keys.W)) {
+            input |= InputCommand.ROTATE;
+        }
+        if (Gdx.input.isKeyJustPressed(Keys.DOWN) || Gdx.input.isKeyJustPressed(Keys.S)) {
+            input |= InputCommand.DROP;
+        }
+        return input;
     }
 
     @Override
     public void dispose() {
+        if (autoplayExecutor != null) {
+            autoplaySearchExecutor.shutdown();
+            autoplaySearchExecutor = null;
+            autoplayExecutor.shutdown();
+            autoplayExecutor = null;
+            autoplayController = null;
+        }
     }
 
     @Override
     public void stop() {
+        saveRecording();
+        playback = null;
+        getCore().setFastForward(false);
+        entityManager.clear();
         stage.dispose();
     }
     
@@ -245,48 +412,139 @@ public class GameState extends State {
         return entityManager;
     }
 
-    public InputManager getInputManager() {
-        return inputManager;
+    public BlockSkeletonCache getBlockSkeletons() {
+        return blockSkeletons;
     }
-
-    public int getScore() {
-        return score;
+    
+    public PlayfieldEntities getPlayfieldEntities() {
+        return playfieldEntities;
     }
 
-    public void setScore(int score) {
-        this.score = score;
-        scoreLabel.setText(Integer.toString(score));
-        if (score > highscore) {
-            highscore = score;
+    /**
+     * Plays a recorded game the next time this state starts instead of
+     * taking player input. F3 replays the last recorded game and F4 toggles
+     * fast-forward during playback.
+     */
+    public void playReplay(Replay replay) {
+        pendingReplay = replay;
+    }
+    
+    public boolean isPlayingReplay() {
+        return playback != null;
+    }
+    
+    /**
+     * @return the replay of the game in progress, or null during playback.
+     */
+    public Replay getRecording() {
+        return recording;
+    }
+    
+    private void saveRecording() {
+        if (recording != null && recording.getTickCount() > 0) {
+            recording.write(Gdx.files.local(LAST_REPLAY_PATH));
+            recording = null;
         }
     }
     
-    public void addScore(int score) {
-        this.score += score;
-        scoreLabel.setText(Integer.toString(this.score));
-        if (this.score > highscore) {
-            highscore = this.score;
+    public boolean isAutoplay() {
+        return autoplay;
+    }
+
+    /**
+     * @param autoplay whether the placement search plays instead of the
+     * player. Toggled with F2 during a game.
+     */
+    public void setAutoplay(boolean autoplay) {
+        if (autoplay && autoplayController == null) {
+            int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            autoplayExecutor = PlacementSearch.newExecutor(workerCount);
+            //searches run off the render thread and the piece falls until one is done
+            autoplaySearchExecutor = PlacementSearch.newExecutor(1);
+            PlacementSearch search = new PlacementSearch(new BoardEvaluator(), PlacementSearch.DEFAULT_BEAM_WIDTH, autoplayExecutor, workerCount);
+            autoplayController = new PolicyController(new HeuristicPolicy(search, autoplaySearchExecutor));
+        }
+        
+        if (autoplay && !this.autoplay) {
+            autoplayController.reset();
+        }
+        this.autoplay = autoplay;
+    }
+
+    public boolean isBlockInstancing() {
+        return blockInstancing;
+    }
+
+    /**
+     * @param blockInstancing true if blocks spawned from now on should share
+     * one skeleton per colour instead of animating their own.
+     */
+    public void setBlockInstancing(boolean blockInstancing) {
+        this.blockInstancing = blockInstancing;
+        if (playfieldEntities != null) {
+            playfieldEntities.setBlockInstancing(blockInstancing);
         }
     }
+
+    public Simulation getSimulation() {
+        return simulation;
+    }
+
+    public Playfield getPlayfield() {
+        return simulation.getPlayfield();
+    }
+
+    public BlockEntity[][] getLockedBlocks() {
+        return playfieldEntities.getLockedBlocks();
+    }
+
+    public InputManager getInputManager() {
+        return inputManager;
+    }
+
+    public int getScore() {
+        return simulation.getScore();
+    }
     
     public void playDownSound() {
-        getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/down.wav", Sound.class).play(.01f);
+        playSound("down", .01f);
     }
     
     public void playLandSound() {
-        getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/land.wav", Sound.class).play(.5f);
+        playSound("land", .5f);
     }
     
     public void playLineSound() {
-        getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/line.wav", Sound.class).play(.5f);
+        playSound("line", .5f);
     }
     
     public void playRotateSound() {
-        getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/rotate.wav", Sound.class).play(.5f);
+        playSound("rotate", .5f);
     }
     
     public void playBonusSound() {
-        getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/bonus.wav", Sound.class).play(.5f);
+        playSound("bonus", .5f);
+    }
+    
+    private void playSound(String name, float volume) {
+        if (!getCore().isFastForward()) {
+            Sound sound = sounds.get(name);
+            if (sound == null) {
+                sound = getCore().getAssetManager().get(Core.DATA_PATH + "/sfx/" + name + ".wav", Sound.class);
+                sounds.put(name, sound);
+            }
+            sound.play(volume);
+        }
+    }
+    
+    /**
+     * Shows a number without creating a string. Labels copy the contents of
+     * a StringBuilder, so the same builder is reused for every label.
+     */
+    private void setNumber(Label label, int number) {
+        numberText.setLength(0);
+        numberText.append(number);
+        label.setText(numberText);
     }
 
     public OrthographicCamera getGameCamera() {
@@ -305,57 +563,89 @@ public class GameState extends State {
         return stage;
     }
 
-    public Array<SaveShape> getShapes() {
+    public Array<CompiledShape> getShapes() {
         return shapes;
     }
 
-    public void subtractLines(int lines) {
-        lineCount -= lines;
-        if (lineCount <= 0) {
-            lineCount = 8;
-            levelCount++;
-        }
-        
-        linesLabel.setText(Integer.toString(lineCount));
-        levelLabel.setText(Integer.toString(levelCount));
+    public int getLevelCount() {
+        return simulation.getLevelCount();
     }
 
-    public int getLevelCount() {
-        return levelCount;
+    public CompiledShape getNextShape() {
+        return simulation.getNextShape();
     }
 
-    public SaveShape getNextShape() {
-        return nextShape;
+    public int getPreviewCount() {
+        return previewCount;
+    }
+
+    /**
+     * @param previewCount how many upcoming pieces are shown, from 1 to
+     * {@link PieceQueue#CAPACITY}.
+     */
+    public void setPreviewCount(int previewCount) {
+        if (previewCount < 1 || previewCount > PieceQueue.CAPACITY) {
+            throw new IllegalArgumentException("Preview count must be between 1 and " + PieceQueue.CAPACITY + ".");
+        }
+        this.previewCount = previewCount;
+        if (preview != null) {
+            preview.setCount(previewCount);
+            updatePreview();
+        }
     }
     
-    public void generateNextShape() {
-        nextShape = shapes.random();
-        generatePreview();
+    private void updatePreview() {
+        if (preview != null) {
+            for (int i = 0; i < preview.getCount(); i++) {
+                preview.show(i, simulation.getPreview(i));
+            }
+        }
     }
     
-    private void generatePreview() {
-        if (previewTable != null) {
-            previewTable.clearChildren();
-            
-            System.out.println(nextShape);
-            System.out.println(nextShape.color);
-            System.out.println(previewDrawable);
-            System.out.println(previewDrawable.getSkeleton().findSlot("tetromino").getColor());
-            previewDrawable.getSkeleton().findSlot("tetromino").getColor().set(nextShape.color);
-            
-            for (int y = 0; y < 4; y++) {
-                for (int x = 0; x < 4; x++) {
-                    if (nextShape.grid[x][y]) {
-                        Image image = new Image(previewDrawable);
-                        previewTable.add(image).grow();
-                    } else {
-                        previewTable.add().grow();
-                    }
-                }
-                if (y < 3) {
-                    previewTable.row();
-                }
+    private class GameListener extends SimulationAdapter {
+        @Override
+        public void pieceSpawned(Simulation simulation) {
+            updatePreview();
+        }
+
+        @Override
+        public void pieceFell(Simulation simulation) {
+            playDownSound();
+        }
+
+        @Override
+        public void pieceLanded(Simulation simulation) {
+            playLandSound();
+        }
+
+        @Override
+        public void pieceDropped(Simulation simulation) {
+            playLandSound();
+        }
+
+        @Override
+        public void linesCleared(Simulation simulation, int[] rows, int count) {
+            if (count >= 4) {
+                playBonusSound();
+            } else {
+                playLineSound();
+            }
+        }
+
+        @Override
+        public void scoreChanged(Simulation simulation) {
+            setNumber(scoreLabel, simulation.getScore());
+            setNumber(linesLabel, simulation.getLineCount());
+            setNumber(levelLabel, simulation.getLevelCount());
+            if (simulation.getScore() > highscore) {
+                highscore = simulation.getScore();
             }
         }
+
+        @Override
+        public void gameOver(Simulation simulation) {
+            saveRecording();
+            new GameOverTimerEntity(GameState.this, 2.0f);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,14 @@
 package com.ray3k.fallingblockshapes.states;
 
-import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.assets.AssetManager;
-import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.scenes.scene2d.Action;
 import com.badlogic.gdx.scenes.scene2d.Stage;
-import com.badlogic.gdx.scenes.scene2d.actions.DelayAction;
-import com.badlogic.gdx.scenes.scene2d.actions.SequenceAction;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.ui.ProgressBar;
 import com.badlogic.gdx.scenes.scene2d.ui.ProgressBar.ProgressBarStyle;
@@ -22,7 +18,9 @@ import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Scaling;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.ray3k.fallingblockshapes.AtlasCache;
 import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.FrameProfiler;
 import com.ray3k.fallingblockshapes.State;
 
 public class LoadingState extends State {
@@ -78,19 +76,16 @@ public class LoadingState extends State {
         AssetManager assetManager = getCore().getAssetManager();
         progressBar.setValue(assetManager.getProgress());
         stage.act(delta);
-        if (!finishedLoading && assetManager.update()) {
-            Action changeStateAction = new Action() {
-                @Override
-                public boolean act(float delta) {
-                    if (nextState != null) {
-                        finishedLoading = true;
-                        packPixmaps();
-                        getCore().getStateManager().loadState(nextState);
-                    }
-                    return true;
-                }
-            };
-            root.addAction(new SequenceAction(new DelayAction(1.0f), changeStateAction));
+        if (!finishedLoading) {
+            getCore().getProfiler().begin(FrameProfiler.ASSET_LOADING);
+            boolean loaded = assetManager.update();
+            getCore().getProfiler().end(FrameProfiler.ASSET_LOADING);
+            
+            if (loaded && nextState != null) {
+                finishedLoading = true;
+                createAtlas();
+                getCore().getStateManager().loadState(nextState);
+            }
         }
     }
 
@@ -123,18 +118,31 @@ public class LoadingState extends State {
         return returnValue;
     }
     
-    private void packPixmaps() {
-        for (String directory : getCore().getImagePacks().keys()) {
-            for (String name : getCore().getImagePacks().get(directory)) {
-                FileHandle file = Gdx.files.local(directory + "/" + name + ".png");
-                getCore().getPixmapPacker().pack(file.nameWithoutExtension(), getCore().getAssetManager().get(file.path(), Pixmap.class));
-            }
+    /**
+     * Uses the cached atlas if it was loaded, otherwise packs the images into
+     * a new atlas, caches it and unloads the images.
+     */
+    private void createAtlas() {
+        AssetManager assetManager = getCore().getAssetManager();
+        AtlasCache cache = getCore().getAtlasCache();
+        if (assetManager.isLoaded(cache.getAtlasFile().path(), TextureAtlas.class)) {
+            getCore().setAtlas(assetManager.get(cache.getAtlasFile().path(), TextureAtlas.class));
+            return;
         }
         
-        getCore().getPixmapPacker().pack("white", getCore().getAssetManager().get(Core.DATA_PATH + "/gfx/white.png", Pixmap.class));
+        PixmapPacker packer = getCore().getPixmapPacker();
+        for (int i = 0; i < cache.size(); i++) {
+            packer.pack(cache.getRegionName(i), assetManager.get(cache.getImage(i).path(), Pixmap.class));
+        }
         
-        TextureAtlas atlas = getCore().getPixmapPacker().generateTextureAtlas(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
+        TextureAtlas atlas = packer.generateTextureAtlas(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
         getCore().setAtlas(atlas);
+        cache.write(packer, atlas, getCore().getFileWriter());
+        
+        //the packer has its own copy of every image
+        for (int i = 0; i < cache.size(); i++) {
+            assetManager.unload(cache.getImage(i).path());
+        }
     }
 
     @Override
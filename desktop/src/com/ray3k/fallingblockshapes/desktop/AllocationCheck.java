@@ -0,0 +1,178 @@
+package com.ray3k.fallingblockshapes.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.esotericsoftware.spine.SkeletonRenderer;
+import com.ray3k.fallingblockshapes.AllocationTracker;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.Entity;
+import com.ray3k.fallingblockshapes.EntityManager;
+import com.ray3k.fallingblockshapes.HeadlessAttachmentLoader;
+import com.ray3k.fallingblockshapes.entities.BlockSkeletonCache;
+import com.ray3k.fallingblockshapes.entities.PlayfieldEntities;
+import com.ray3k.fallingblockshapes.simulation.LowestPlacementPolicy;
+import com.ray3k.fallingblockshapes.simulation.PolicyController;
+import com.ray3k.fallingblockshapes.simulation.Simulation;
+
+/**
+ * Plays a scripted game together with a field of colliding entities and
+ * exits with an error if the steady state allocates more than a threshold
+ * per tick. The game is mirrored by the same pooled piece and block entities
+ * as in {@link com.ray3k.fallingblockshapes.states.GameState}, and every tick
+ * ends with a draw pass of the entity manager that sorts the render queue but
+ * renders nothing. Games restart on game over so the run always covers the
+ * same number of ticks.
+ */
+public class AllocationCheck {
+    public static void main(String[] arg) {
+        long seed = 0;
+        int warmupTicks = 20000;
+        int ticks = 50000;
+        int entityCount = 200;
+        double maxBytesPerTick = 8;
+        String directory = Core.DATA_PATH + "/shapes/";
+        
+        for (int i = 0; i < arg.length; i++) {
+            if (arg[i].equals("-seed")) {
+                seed = Long.parseLong(arg[++i]);
+            } else if (arg[i].equals("-warmup")) {
+                warmupTicks = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-ticks")) {
+                ticks = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-entities")) {
+                entityCount = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-max-bytes-per-tick")) {
+                maxBytesPerTick = Double.parseDouble(arg[++i]);
+            } else {
+                directory = arg[i];
+            }
+        }
+        
+        AllocationTracker tracker = new AllocationTracker();
+        if (!tracker.isSupported()) {
+            System.out.println("This VM cannot measure allocations per thread, skipping the check.");
+            return;
+        }
+        
+        Array<CompiledShape> shapes = BatchLauncher.loadShapes(new FileHandle(directory));
+        Simulation simulation = new Simulation(shapes, seed);
+        PolicyController controller = new PolicyController(LowestPlacementPolicy.FACTORY.newPolicy(seed));
+        EntityManager entityManager = new EntityManager();
+        entityManager.enableBroadPhase(Particle.SIZE * 2);
+        
+        SkeletonData skeletonData = new SkeletonJson(new HeadlessAttachmentLoader()).readSkeletonData(new FileHandle(Core.DATA_PATH + "/spine/tetromino.json"));
+        BlockSkeletonCache blockSkeletons = new BlockSkeletonCache(skeletonData);
+        PlayfieldEntities playfieldEntities = new PlayfieldEntities(null, new HeadlessSkeletonRenderer());
+        playfieldEntities.start(simulation, entityManager, blockSkeletons);
+        simulation.addListener(playfieldEntities);
+        
+        for (int i = 0; i < entityCount; i++) {
+            Particle particle = new Particle(entityManager);
+            particle.setPosition(i * 37 % (int) Particle.BOUNDS, i * 53 % (int) Particle.BOUNDS);
+            particle.setMotion(100.0f, i * 47 % 360);
+        }
+        simulation.start();
+        
+        for (int i = 0; i < warmupTicks; i++) {
+            tick(simulation, controller, entityManager, playfieldEntities, blockSkeletons);
+        }
+        
+        long maxTick = 0;
+        for (int i = 0; i < ticks; i++) {
+            tracker.begin();
+            tick(simulation, controller, entityManager, playfieldEntities, blockSkeletons);
+            maxTick = Math.max(maxTick, tracker.end());
+        }
+        
+        double bytesPerTick = tracker.getAverage();
+        System.out.println(String.format("%d ticks, %d bytes, %.2f bytes/tick, largest tick %d bytes", tracker.getSamples(), tracker.getTotal(), bytesPerTick, maxTick));
+        if (bytesPerTick > maxBytesPerTick) {
+            System.out.println(String.format("FAILED: more than %.2f bytes/tick allocated in steady state.", maxBytesPerTick));
+            System.exit(1);
+        }
+    }
+    
+    private static void tick(Simulation simulation, PolicyController controller, EntityManager entityManager, PlayfieldEntities playfieldEntities, BlockSkeletonCache blockSkeletons) {
+        if (simulation.isGameOver()) {
+            playfieldEntities.clear();
+            playfieldEntities.start(simulation, entityManager, blockSkeletons);
+            simulation.start();
+            controller.reset();
+        }
+        entityManager.beginStep();
+        simulation.step(Core.STEP, controller.poll(simulation));
+        blockSkeletons.update(Core.STEP);
+        entityManager.act(Core.STEP);
+        entityManager.draw(null, .5f);
+    }
+    
+    /**
+     * Draws nothing, as there is no GL context. Blocks still position and
+     * update their skeletons before handing them over.
+     */
+    private static class HeadlessSkeletonRenderer extends SkeletonRenderer {
+        @Override
+        public void draw(Batch batch, Skeleton skeleton) {
+        }
+    }
+    
+    /**
+     * Bounces around a square and reverses on contact with another particle,
+     * reading its transform through the out-parameter accessors.
+     */
+    private static class Particle extends Entity {
+        private static final float SIZE = 16.0f;
+        private static final float BOUNDS = 800.0f;
+        private final Vector2 temp;
+
+        public Particle(EntityManager manager) {
+            super(manager, null);
+            temp = new Vector2();
+        }
+
+        @Override
+        public void create() {
+            setCheckingCollisions(true);
+            getCollisionBox().setSize(SIZE, SIZE);
+        }
+
+        @Override
+        public void act(float delta) {
+            getPosition(temp);
+            if (temp.x < 0 || temp.x > BOUNDS) {
+                setXspeed(-getXspeed());
+            }
+            if (temp.y < 0 || temp.y > BOUNDS) {
+                setYspeed(-getYspeed());
+            }
+        }
+
+        @Override
+        public void act_end(float delta) {
+        }
+
+        @Override
+        public void draw(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+            other.getPosition(temp).sub(getX(), getY());
+            if (temp.x * getXspeed() + temp.y * getYspeed() > 0) {
+                setXspeed(-getXspeed());
+                setYspeed(-getYspeed());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.ray3k.fallingblockshapes.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.ShapePack;
+import com.ray3k.fallingblockshapes.simulation.BagGenerator;
+import com.ray3k.fallingblockshapes.simulation.BatchResult;
+import com.ray3k.fallingblockshapes.simulation.BatchSimulator;
+import com.ray3k.fallingblockshapes.simulation.HeuristicPolicy;
+import com.ray3k.fallingblockshapes.simulation.LowestPlacementPolicy;
+import com.ray3k.fallingblockshapes.simulation.PieceGenerator;
+import com.ray3k.fallingblockshapes.simulation.PlacementPolicy;
+import com.ray3k.fallingblockshapes.simulation.RandomPlacementPolicy;
+import com.ray3k.fallingblockshapes.simulation.UniformGenerator;
+import com.ray3k.fallingblockshapes.simulation.WeightedGenerator;
+
+/**
+ * Plays batches of games headlessly and prints the distributions of the
+ * results. Every remaining argument is a directory of .shape files that is
+ * evaluated as one shape set. The weighted generator takes one weight per
+ * shape, in the order of the file names.
+ * <p>
+ * Usage: {@code BatchLauncher [-games n] [-seed n] [-threads n]
+ * [-max-pieces n] [-policy random|lowest|heuristic]
+ * [-generator uniform|bag|weighted] [-bag-copies n] [-weights w,w,...]
+ * [shape directory...]}
+ */
+public class BatchLauncher {
+    public static void main (String[] arg) {
+        int games = 1000;
+        long seed = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxPieces = BatchSimulator.DEFAULT_MAX_PIECES;
+        String policyName = "lowest";
+        String generatorName = "uniform";
+        int bagCopies = 1;
+        String weights = null;
+        Array<String> directories = new Array<String>();
+        
+        for (int i = 0; i < arg.length; i++) {
+            if (arg[i].equals("-games")) {
+                games = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-seed")) {
+                seed = Long.parseLong(arg[++i]);
+            } else if (arg[i].equals("-threads")) {
+                threads = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-max-pieces")) {
+                maxPieces = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-policy")) {
+                policyName = arg[++i];
+            } else if (arg[i].equals("-generator")) {
+                generatorName = arg[++i];
+            } else if (arg[i].equals("-bag-copies")) {
+                bagCopies = Integer.parseInt(arg[++i]);
+            } else if (arg[i].equals("-weights")) {
+                weights = arg[++i];
+            } else {
+                directories.add(arg[i]);
+            }
+        }
+        if (directories.size == 0) {
+            directories.add(Core.DATA_PATH + "/shapes/");
+        }
+        
+        PlacementPolicy.Factory factory = createPolicy(policyName);
+        BatchSimulator simulator = new BatchSimulator(threads);
+        simulator.setMaxPieces(maxPieces);
+        simulator.setGeneratorFactory(createGenerator(generatorName, bagCopies, weights));
+        
+        System.out.println("Playing " + games + " games per shape set on " + simulator.getParallelism() + " threads with the " + policyName + " policy and the " + generatorName + " generator.");
+        for (String directory : directories) {
+            Array<CompiledShape> shapes = loadShapes(new FileHandle(directory));
+            BatchResult result = simulator.run(shapes, games, seed, factory);
+            print(directory, shapes, result);
+        }
+        
+        simulator.shutdown();
+    }
+    
+    private static PlacementPolicy.Factory createPolicy(String name) {
+        if (name.equals("random")) {
+            return RandomPlacementPolicy.FACTORY;
+        } else if (name.equals("lowest")) {
+            return LowestPlacementPolicy.FACTORY;
+        } else if (name.equals("heuristic")) {
+            return HeuristicPolicy.FACTORY;
+        } else {
+            throw new IllegalArgumentException("Unknown policy: " + name);
+        }
+    }
+    
+    private static PieceGenerator.Factory createGenerator(String name, int bagCopies, String weights) {
+        if (name.equals("uniform")) {
+            return UniformGenerator.FACTORY;
+        } else if (name.equals("bag")) {
+            return BagGenerator.factory(bagCopies);
+        } else if (name.equals("weighted")) {
+            if (weights == null) {
+                throw new IllegalArgumentException("The weighted generator needs -weights.");
+            }
+            String[] values = weights.split(",");
+            float[] parsed = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                parsed[i] = Float.parseFloat(values[i].trim());
+            }
+            return WeightedGenerator.factory(parsed);
+        } else {
+            throw new IllegalArgumentException("Unknown generator: " + name);
+        }
+    }
+    
+    static Array<CompiledShape> loadShapes(FileHandle directory) {
+        if (!directory.isDirectory()) {
+            throw new IllegalArgumentException("Not a shape directory: " + directory.path());
+        }
+        
+        ShapePack pack = ShapePack.build(directory);
+        for (FileHandle file : pack.getSkippedFiles()) {
+            System.out.println("Skipping corrupt shape file: " + file.path());
+        }
+        return pack.getShapes();
+    }
+    
+    private static void print(String directory, Array<CompiledShape> shapes, BatchResult result) {
+        double seconds = result.getElapsedNanos() / 1000000000.0;
+        System.out.println();
+        System.out.println(directory + " (" + shapes.size + " shapes)");
+        System.out.println("  score  " + result.getScores());
+        System.out.println("  lines  " + result.getLines());
+        System.out.println("  level  " + result.getLevels());
+        System.out.println("  pieces " + result.getPieces());
+        System.out.println(String.format("  %d games, %d capped, %.2f s, %.0f games/s, %.0f ticks/s", result.getGameCount(), result.getCappedCount(), seconds, result.getGameCount() / seconds, result.getTicks() / seconds));
+    }
+}
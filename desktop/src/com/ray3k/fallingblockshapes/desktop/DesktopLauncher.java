@@ -9,6 +9,19 @@ public class DesktopLauncher {
 		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
                 config.width = 800;
                 config.height = 800;
-		new LwjglApplication(new Core(), config);
+                
+                //-replay <file> plays a recorded game on start, -fast plays it at full speed,
+                //-track-allocations records the bytes allocated by every step in the profiler
+                Core core = new Core();
+                for (int i = 0; i < arg.length; i++) {
+                    if (arg[i].equals("-replay") && i + 1 < arg.length) {
+                        core.setStartupReplay(arg[++i]);
+                    } else if (arg[i].equals("-fast")) {
+                        core.setFastForward(true);
+                    } else if (arg[i].equals("-track-allocations")) {
+                        core.setTrackingAllocations(true);
+                    }
+                }
+		new LwjglApplication(core, config);
 	}
 }
@@ -0,0 +1,144 @@
+package com.ray3k.fallingblockshapes.desktop;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.esotericsoftware.spine.SkeletonRenderer;
+import com.ray3k.fallingblockshapes.CompiledShape;
+import com.ray3k.fallingblockshapes.Core;
+import com.ray3k.fallingblockshapes.Entity;
+import com.ray3k.fallingblockshapes.EntityManager;
+import com.ray3k.fallingblockshapes.EntityView;
+import com.ray3k.fallingblockshapes.HeadlessAttachmentLoader;
+import com.ray3k.fallingblockshapes.RenderQueue;
+import com.ray3k.fallingblockshapes.entities.BlockEntity;
+import com.ray3k.fallingblockshapes.entities.BlockSkeletonCache;
+import com.ray3k.fallingblockshapes.entities.PlayfieldEntities;
+import com.ray3k.fallingblockshapes.simulation.LowestPlacementPolicy;
+import com.ray3k.fallingblockshapes.simulation.PolicyController;
+import com.ray3k.fallingblockshapes.simulation.Simulation;
+
+/**
+ * Plays a scripted game the way {@link com.ray3k.fallingblockshapes.states.GameState}
+ * does and draws every tick at half a step. Exits with an error if a block
+ * that moved during the step is not drawn halfway between its positions
+ * before and after the step, or if no block moved at all.
+ */
+public class InterpolationCheck {
+    private static final float ALPHA = .5f;
+    private static final float TOLERANCE = .001f;
+
+    public static void main(String[] arg) {
+        long seed = 0;
+        int ticks = 20000;
+        String directory = Core.DATA_PATH + "/shapes/";
+
+        for (int i = 0; i < arg.length; i++) {
+            if (arg[i].equals("-seed")) {
+                seed = Long.parseLong(arg[++i]);
+            } else if (arg[i].equals("-ticks")) {
+                ticks = Integer.parseInt(arg[++i]);
+            } else {
+                directory = arg[i];
+            }
+        }
+
+        Array<CompiledShape> shapes = BatchLauncher.loadShapes(new FileHandle(directory));
+        Simulation simulation = new Simulation(shapes, seed);
+        PolicyController controller = new PolicyController(LowestPlacementPolicy.FACTORY.newPolicy(seed));
+        EntityManager entityManager = new EntityManager();
+        EntityView<BlockEntity> blocks = entityManager.ofType(BlockEntity.class);
+
+        SkeletonData skeletonData = new SkeletonJson(new HeadlessAttachmentLoader()).readSkeletonData(new FileHandle(Core.DATA_PATH + "/spine/tetromino.json"));
+        BlockSkeletonCache blockSkeletons = new BlockSkeletonCache(skeletonData);
+        RecordingSkeletonRenderer renderer = new RecordingSkeletonRenderer();
+        PlayfieldEntities playfieldEntities = new PlayfieldEntities(null, renderer);
+        playfieldEntities.start(simulation, entityManager, blockSkeletons);
+        simulation.addListener(playfieldEntities);
+        simulation.start();
+
+        ObjectMap<Entity, Vector2> startPositions = new ObjectMap<Entity, Vector2>();
+        int moves = 0;
+        int failures = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            if (simulation.isGameOver()) {
+                playfieldEntities.clear();
+                playfieldEntities.start(simulation, entityManager, blockSkeletons);
+                simulation.start();
+                controller.reset();
+            }
+
+            entityManager.beginStep();
+            startPositions.clear();
+            for (int i = 0; i < blocks.size(); i++) {
+                BlockEntity block = blocks.get(i);
+                startPositions.put(block, new Vector2(block.getX(), block.getY()));
+            }
+
+            simulation.step(Core.STEP, controller.poll(simulation));
+            blockSkeletons.update(Core.STEP);
+            entityManager.act(Core.STEP);
+
+            renderer.positions.clear();
+            entityManager.draw(null, ALPHA);
+
+            //blocks are drawn in render queue order, one skeleton each
+            RenderQueue renderQueue = entityManager.getRenderQueue();
+            int drawn = 0;
+            for (int bucketIndex = 0; bucketIndex < renderQueue.getBucketCount(); bucketIndex++) {
+                Array<Entity> bucket = renderQueue.getBucket(bucketIndex);
+                for (int i = 0; i < bucket.size; i++) {
+                    Entity entity = bucket.get(i);
+                    if (entity.isDestroyed() || !(entity instanceof BlockEntity)) {
+                        continue;
+                    }
+
+                    float drawnX = renderer.positions.get(drawn * 2);
+                    float drawnY = renderer.positions.get(drawn * 2 + 1);
+                    drawn++;
+
+                    Vector2 start = startPositions.get(entity);
+                    if (start == null || start.x == entity.getX() && start.y == entity.getY()) {
+                        continue;
+                    }
+
+                    moves++;
+                    float expectedX = MathUtils.lerp(start.x, entity.getX(), ALPHA);
+                    float expectedY = MathUtils.lerp(start.y, entity.getY(), ALPHA);
+                    if (Math.abs(drawnX - expectedX) > TOLERANCE || Math.abs(drawnY - expectedY) > TOLERANCE) {
+                        if (failures++ < 10) {
+                            System.out.println(String.format("Tick %d: block moved from (%.2f, %.2f) to (%.2f, %.2f) but was drawn at (%.2f, %.2f).", tick, start.x, start.y, entity.getX(), entity.getY(), drawnX, drawnY));
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println(String.format("%d ticks, %d block moves checked, %d drawn off the midpoint", ticks, moves, failures));
+        if (moves == 0 || failures > 0) {
+            System.out.println("FAILED: moving blocks are not drawn between their positions of consecutive ticks.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Records where every skeleton would be drawn instead of drawing it, as
+     * there is no GL context.
+     */
+    private static class RecordingSkeletonRenderer extends SkeletonRenderer {
+        private final FloatArray positions = new FloatArray();
+
+        @Override
+        public void draw(Batch batch, Skeleton skeleton) {
+            positions.add(skeleton.getX());
+            positions.add(skeleton.getY());
+        }
+    }
+}